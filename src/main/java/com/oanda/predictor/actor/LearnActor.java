@@ -1,13 +1,17 @@
 package com.oanda.predictor.actor;
 
+import akka.actor.ActorRef;
 import akka.actor.UntypedAbstractActor;
-import com.google.common.collect.Lists;
+import com.oanda.predictor.config.NetworkProfiles;
 import com.oanda.predictor.domain.Candle;
-import com.oanda.predictor.provider.ApplicationContextProvider;
 import com.oanda.predictor.repository.CandleRepository;
+import com.oanda.predictor.repository.ModelRegistry;
+import com.oanda.predictor.repository.ModelSlot;
 import com.oanda.predictor.repository.PredictionRepository;
+import com.oanda.predictor.service.TrainingScheduler;
 import com.oanda.predictor.util.CSVUtil;
 import com.oanda.predictor.util.LSTMNetwork;
+import com.oanda.predictor.util.MappedDataSetIterator;
 import com.oanda.predictor.util.StockDataSetIterator;
 import lombok.Getter;
 import lombok.Setter;
@@ -15,31 +19,33 @@ import lombok.Synchronized;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.math3.util.Precision;
 import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
-import org.deeplearning4j.util.ModelSerializer;
 import org.joda.time.DateTime;
+import org.nd4j.linalg.api.buffer.DataBuffer;
 import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
+import org.nd4j.linalg.factory.Nd4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Scope;
-import org.springframework.scheduling.TaskScheduler;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
-import java.nio.file.DirectoryStream;
-import java.nio.file.Files;
-import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.Comparator;
-import java.util.Date;
 import java.util.List;
-import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
 
 import static com.oanda.predictor.repository.PredictionRepository.Signal;
+import static com.oanda.predictor.util.StockDataSetIterator.VECTOR_K;
+import static com.oanda.predictor.util.StockDataSetIterator.createSequence;
 import static com.oanda.predictor.util.StockDataSetIterator.deNormalize;
 import static com.oanda.predictor.util.StockDataSetIterator.getVectorSize;
-import static java.lang.Double.parseDouble;
+import static com.oanda.predictor.util.StockDataSetIterator.lastSequence;
+import static com.oanda.predictor.util.StockDataSetIterator.windowRanges;
 
 @Slf4j
 @Scope("prototype")
@@ -51,10 +57,13 @@ public class LearnActor extends UntypedAbstractActor {
     private final String instrument;
     private final Integer step;
 
-    private volatile MultiLayerNetwork neuralNetwork;
+    // the network with the normalization of its training window, replaced as a whole
+    private final ModelSlot modelSlot = new ModelSlot();
     private volatile DateTime lastLearn = null;
-    private volatile Double lastPredict = 0D;
-    private volatile Double lastCandleClose = 0D;
+    // time of the last candle the network was trained on, -1 if unknown
+    private volatile long trainedUntil = -1;
+    // the close of the last applied prediction, guarded by the actor lock
+    private double lastPredict = 0D;
 
     @Autowired
     private CandleRepository candleRepository;
@@ -62,24 +71,61 @@ public class LearnActor extends UntypedAbstractActor {
     @Autowired
     private PredictionRepository predictionRepository;
 
+    @Autowired
+    private TrainingScheduler trainingScheduler;
+
+    @Autowired
+    private ModelRegistry modelRegistry;
+
+    @Autowired
+    private NetworkProfiles networkProfiles;
+
+    @Autowired
+    @Qualifier("predictExecutor")
+    private TaskExecutor predictExecutor;
+
     @Getter
     @Setter
     public volatile Status status = Status.NOTHING;
 
-    private volatile double closeMin;
-    private volatile double closeMax;
     private final double[] maBlacks = new double[5];
     private final double[] maWhites = new double[5];
 
+    // predictions of a series run in parallel, each in the window buffer of its thread and on its own inference worker
+    private static final ThreadLocal<Window> WINDOWS = ThreadLocal.withInitial(Window::new);
+
+    // guarded by the actor lock: the window of the last prediction started, and the sequence of the last one applied
+    private Claim claim = null;
+    private long appliedSequence = 0;
+
     @Value("${predictor.learn.interval}")
     private Integer learnInterval;
 
+    @Value("${predictor.learn.incremental.epochs}")
+    private Integer incrementalEpochs;
+
+    @Value("${predictor.learn.incremental.max}")
+    private Integer maxFineTunes;
+
+    @Value("${predictor.learn.epochs}")
+    private Integer maxEpochs;
+
+    @Value("${predictor.learn.validation.candles}")
+    private Integer validationCandles;
+
+    @Value("${predictor.learn.patience}")
+    private Integer patience;
+
+    @Value("${predictor.learn.min.delta}")
+    private Double minDelta;
+
     @Value("${neuralnetwork.store.disk}")
     private Boolean storeDisk;
 
-    private final String locationToSave;
+    @Value("${neuralnetwork.store.path}")
+    private String storePath;
 
-    private final TaskScheduler taskScheduler = ApplicationContextProvider.getApplicationContext().getBean(TaskScheduler.class);
+    private final String locationToSave;
 
     public LearnActor(String instrument, Integer step) {
         this.instrument = instrument;
@@ -90,69 +136,135 @@ public class LearnActor extends UntypedAbstractActor {
     @Override
     public void onReceive(Object message) {
         if (Messages.LEARN.equals(message)) {
-            if (!status.equals(Status.TRAINED)) {
-                taskScheduler.schedule(this::trainNetwork, new Date());
+            if (!status.equals(Status.TRAINED) && isLearnDue()) {
+                trainingScheduler.submit(instrument + step, lastLearn, this::trainNetwork);
             }
         }
 
         if (Messages.PREDICT.equals(message)) {
-            if (getNeuralNetwork() != null) {
-                taskScheduler.schedule(this::predict, new Date());
+            ActorRef sender = getSender();
+            if (getModel() == null) {
+                sender.tell(predictionRepository.getSignal(instrument, step), getSelf());
+                return;
+            }
+
+            try {
+                predictExecutor.execute(() -> predict().thenAccept(signal -> sender.tell(signal, ActorRef.noSender())));
+            } catch (TaskRejectedException ex) {
+                log.debug("Predict {}{} rejected: {}", instrument, step, ex.getMessage());
+                sender.tell(predictionRepository.getSignal(instrument, step), getSelf());
             }
         }
     }
 
-    @Synchronized
-    private void predict() {
-        Signal signal = Signal.NONE;
-        List<Candle> last = candleRepository.getLastCandles(instrument, step, getVectorSize());
-
-        // check vector
-        if (last.size() < getVectorSize()) return;
+    /**
+     * Predicts on the last window of the series. A request for the window of a running prediction gets its signal
+     * instead of predicting the same again.
+     */
+    private CompletableFuture<Signal> predict() {
+        Window window = WINDOWS.get();
+        long candleTime = candleRepository.copyLastWindow(instrument, step, window.closes, window.indicators);
+        if (candleTime < 0) {
+            return CompletableFuture.completedFuture(predictionRepository.getSignal(instrument, step));
+        }
 
         // check new data
-        double vectorClose = last.get(last.size() - 1).getClose();
-        if (lastCandleClose > 0 && lastCandleClose == vectorClose) return;
-        lastCandleClose = vectorClose;
+        Claim own = new Claim(window.closes[window.closes.length - 1]);
+        Claim claimed = claimWindow(own);
+        if (claimed != own) return claimed.signal;
 
-        INDArray output;
-        StockDataSetIterator iterator = new StockDataSetIterator(last, 0.0);
         try {
-            output = neuralNetwork.rnnTimeStep(iterator.getTest().get(iterator.getTest().size() - 1).getKey());
+            own.signal.complete(predict(window, candleTime, own.sequence));
+        } catch (RuntimeException ex) {
+            log.error("Predict {}{} failed: {}", instrument, step, ex.getMessage());
+            own.signal.complete(predictionRepository.getSignal(instrument, step));
+        }
+        return own.signal;
+    }
+
+    private Signal predict(Window window, long candleTime, long sequence) {
+        ModelRegistry.Entry normalizer;
+        double[] mins;
+        double[] maxs;
+        INDArray output;
+        // a model swapped meanwhile is released once this prediction is done with it
+        try (ModelSlot.Lease lease = modelSlot.acquire()) {
+            if (lease == null) return predictionRepository.getSignal(instrument, step);
+
+            // the input is scaled as the network was trained
+            normalizer = lease.getModel().getEntry();
+            mins = normalizer.getMins();
+            maxs = normalizer.getMaxs();
+            window.closeRange[0] = normalizer.getCloseMin();
+            window.closeRange[1] = normalizer.getCloseMax();
+            if (mins == null || maxs == null) {
+                // imported models only know their close range, the window scales the rest as before
+                windowRanges(window.indicators, window.closes, window.mins, window.maxs, window.closeRange);
+                mins = window.mins;
+                maxs = window.maxs;
+            }
+
+            // the sequence of the last candles, no recurrent state is carried from one prediction to the next
+            output = lease.getModel().getEngine().predict(lastSequence(window.indicators, window.closes, mins, maxs, window.closeRange, window.sequence));
         } catch (Exception ex) {
             log.error("Predict {}{} failed: {}", instrument, step, ex.getMessage());
-            predictionRepository.addPredict(instrument, signal);
-            return;
+            return applyPredict(sequence, candleTime, Signal.NONE, Double.NaN, Double.NaN, Double.NaN);
         }
 
-        double maBlack = Precision.round(deNormalize(output.getDouble(3), iterator.getMins()[3], iterator.getMaxs()[3]), 5);
-        double maWhite = Precision.round(deNormalize(output.getDouble(4), iterator.getMins()[4], iterator.getMaxs()[4]), 5);
-        double ema = Precision.round(deNormalize(output.getDouble(5), iterator.getMins()[5], iterator.getMaxs()[5]), 5);
-        double closePrice = Precision.round(deNormalize(output.getDouble(6), closeMin, closeMax), 5);
-        if (!Double.isNaN(closePrice) && closePrice > 0 && closePrice != lastPredict) {
-            double[] mas = Objects.requireNonNull(iterator.getIndicators())[4];
-            double[] emas = Objects.requireNonNull(iterator.getIndicators())[5];
-            if (emas.length >= 5 && mas.length >= 3) {
-                boolean maDown = mas[emas.length - 1] < mas[emas.length - 2] && mas[emas.length - 2] < mas[emas.length - 3];
-                boolean emaDown = emas[emas.length - 1] < emas[emas.length - 2] && emas[emas.length - 3] < emas[emas.length - 5];
-                if (emaDown && maDown && closePrice < maBlack && closePrice <= maWhite && closePrice < ema) {
-                    signal = Signal.DOWN;
-                }
+        double maBlack = Precision.round(deNormalize(output.getDouble(3), mins[3], maxs[3]), 5);
+        double maWhite = Precision.round(deNormalize(output.getDouble(4), mins[4], maxs[4]), 5);
+        double ema = Precision.round(deNormalize(output.getDouble(5), mins[5], maxs[5]), 5);
+        double closePrice = Precision.round(deNormalize(output.getDouble(6), normalizer.getCloseMin(), normalizer.getCloseMax()), 5);
 
-                boolean maUp = mas[emas.length - 1] > mas[emas.length - 2] && mas[emas.length - 2] > mas[emas.length - 3];
-                boolean emaUp = emas[emas.length - 1] > emas[emas.length - 2] && emas[emas.length - 3] > emas[emas.length - 5];
-                if (emaUp && maUp && closePrice > maBlack && closePrice >= maWhite && closePrice > ema) {
-                    signal = Signal.UP;
-                }
+        Signal signal = Signal.NONE;
+        double[] mas = window.indicators[4];
+        double[] emas = window.indicators[5];
+        if (emas.length >= 5 && mas.length >= 3) {
+            boolean maDown = mas[emas.length - 1] < mas[emas.length - 2] && mas[emas.length - 2] < mas[emas.length - 3];
+            boolean emaDown = emas[emas.length - 1] < emas[emas.length - 2] && emas[emas.length - 3] < emas[emas.length - 5];
+            if (emaDown && maDown && closePrice < maBlack && closePrice <= maWhite && closePrice < ema) {
+                signal = Signal.DOWN;
             }
 
-            signal = getMaSignal(signal, maWhite, maWhites);
+            boolean maUp = mas[emas.length - 1] > mas[emas.length - 2] && mas[emas.length - 2] > mas[emas.length - 3];
+            boolean emaUp = emas[emas.length - 1] > emas[emas.length - 2] && emas[emas.length - 3] > emas[emas.length - 5];
+            if (emaUp && maUp && closePrice > maBlack && closePrice >= maWhite && closePrice > ema) {
+                signal = Signal.UP;
+            }
+        }
+
+        return applyPredict(sequence, candleTime, signal, maBlack, maWhite, closePrice);
+    }
+
+    @Synchronized
+    private Claim claimWindow(Claim own) {
+        // the same close is the same window
+        if (claim != null && claim.close == own.close) return claim;
+
+        own.sequence = claim == null ? 1 : claim.sequence + 1;
+        claim = own;
+        return own;
+    }
+
+    /**
+     * Shifts the moving averages and stores the signal, in the order the windows were claimed: a prediction
+     * overtaken by the one of a newer window answers the stored signal.
+     */
+    @Synchronized
+    private Signal applyPredict(long sequence, long candleTime, Signal trend, double maBlack, double maWhite, double closePrice) {
+        if (sequence < appliedSequence) return predictionRepository.getSignal(instrument, step);
+        appliedSequence = sequence;
+
+        Signal signal = Signal.NONE;
+        if (!Double.isNaN(closePrice) && closePrice > 0 && closePrice != lastPredict) {
+            signal = getMaSignal(trend, maWhite, maWhites);
             signal = getMaSignal(signal, maBlack, maBlacks);
 
             lastPredict = closePrice;
         }
 
-        predictionRepository.addPredict(instrument, signal);
+        predictionRepository.addPredict(instrument, step, signal, candleTime);
+        return signal;
     }
 
     private Signal getMaSignal(final Signal signal, final double ma, double[] mas) {
@@ -178,29 +290,73 @@ public class LearnActor extends UntypedAbstractActor {
         return signal;
     }
 
-    private void trainNetwork() {
+    private boolean isLearnDue() {
         if (lastLearn != null && (DateTime.now().getMillis() - lastLearn.getMillis()) < TimeUnit.MINUTES.toMillis(learnInterval)) {
-            return;
+            return false;
         }
 
-        List<Candle> candles = candleRepository.getLastCandles(instrument, step, candleRepository.getLimit());
+        return candleRepository.getSize(instrument, step) >= candleRepository.getLimit();
+    }
+
+    private void trainNetwork() {
+        if (!isLearnDue()) return;
+
+        // the window spans the whole ring buffer, so copy it before the next tick overwrites the oldest candle
+        List<Candle> candles = candleRepository.copyLastCandles(instrument, step, candleRepository.getLimit());
         if (candles.size() < candleRepository.getLimit()) return;
 
+        int newCandles = countNewCandles(candles);
+        ModelRegistry.Model current = modelSlot.get();
+        boolean fineTune = current != null && isFineTuneDue(current.getEntry(), newCandles, candles.size());
+        if (fineTune && newCandles == 0) {
+            log.info("No new candles to fine-tune {}_{} on", instrument, step);
+            lastLearn = DateTime.now();
+            return;
+        }
+
         try {
             setStatus(Status.TRAINED);
             log.info("Start train: {}_{}", instrument, step);
             StockDataSetIterator iterator = new StockDataSetIterator(candles, 1.0);
-            neuralNetwork = LSTMNetwork.buildLstmNetworks(iterator);
-            closeMin = iterator.getCloses()[0];
-            closeMax = iterator.getCloses()[1];
-
-            if (storeDisk && neuralNetwork != null) {
-                try (DirectoryStream<Path> dirStream = Files.newDirectoryStream(Paths.get("."), locationToSave + "_*")) {
-                    dirStream.iterator().forEachRemaining(path -> path.toFile().delete());
-                    String filePath = locationToSave + "_" + closeMin + "_" + closeMax;
-                    ModelSerializer.writeModel(neuralNetwork, filePath, true);
-                    log.info("The model is saved to disk: {}", filePath);
-                    CSVUtil.saveCandles(candles, filePath + "Data");
+            ModelRegistry.Entry entry = new ModelRegistry.Entry();
+            MultiLayerNetwork network;
+            if (fineTune) {
+                ModelRegistry.Entry trained = current.getEntry();
+                log.info("Fine-tune {}_{} on {} new candles", instrument, step, newCandles);
+                iterator.useLastCandles(newCandles);
+                // new candles scale as the network learned, not to the ranges of the moved window
+                iterator.useRanges(trained.getMins(), trained.getMaxs(), trained.getCloseMin(), trained.getCloseMax());
+                // the predictions keep using the current network meanwhile
+                network = current.getNetwork().clone();
+                LSTMNetwork.fit(network, iterator, incrementalEpochs);
+                entry.setTraining("FINE_TUNE");
+                entry.setEpochs(incrementalEpochs);
+                entry.setFineTunes(trained.getFineTunes() + 1);
+                // same architecture, and the score is still the one of its training from scratch
+                entry.setProfile(trained.getProfile());
+                entry.setValidationScore(trained.getValidationScore());
+            } else {
+                network = trainFromScratch(iterator, candles, entry);
+            }
+            trainedUntil = candles.get(candles.size() - 1).getTime().getTime();
+
+            // the ranges the network was trained with scale its inputs and outputs from now on
+            entry.setSymbol(instrument);
+            entry.setStep(step);
+            entry.setDtype(Nd4j.dataType().name());
+            entry.setCloseMin(iterator.getCloses()[0]);
+            entry.setCloseMax(iterator.getCloses()[1]);
+            entry.setMins(iterator.getMins().clone());
+            entry.setMaxs(iterator.getMaxs().clone());
+            entry.setWindowFrom(candles.get(0).getTime().getTime());
+            entry.setWindowUntil(trainedUntil);
+            entry.setCandles(candles.size());
+            modelSlot.set(new ModelRegistry.Model(entry, network));
+
+            if (storeDisk) {
+                try {
+                    modelRegistry.save(entry, network);
+                    CSVUtil.saveCandles(candles, Paths.get(storePath, locationToSave + "Data").toString());
                     log.info("The data is saved to disk also");
                     lastLearn = DateTime.now();
                     setStatus(Status.READY);
@@ -208,37 +364,101 @@ public class LearnActor extends UntypedAbstractActor {
                     log.error("Failed save to disk {}{}: {}", instrument, step, ex.getMessage());
                 }
             }
+        } catch (CancellationException ex) {
+            log.info("Train cancelled: {}_{}", instrument, step);
+            setStatus(modelSlot.get() == null ? Status.NOTHING : Status.READY);
         } catch (Exception ex) {
             log.error("Failed create network {}{}: {}", instrument, step, ex.getMessage());
             ex.printStackTrace();
         }
     }
 
-    @Synchronized
-    private MultiLayerNetwork getNeuralNetwork() {
-        if (storeDisk && neuralNetwork == null) {
-            try (DirectoryStream<Path> dirStream = Files.newDirectoryStream(Paths.get("."), locationToSave + "_*")) {
-                List<Path> paths = Lists.newArrayList(dirStream.iterator())
-                        .stream()
-                        .filter(path -> !path.toString().contains(".csv"))
-                        .sorted(Comparator.comparing(o -> o.toFile().lastModified()))
-                        .collect(Collectors.toList());
-
-                if (!paths.isEmpty()) {
-                    String fileName = paths.get(paths.size() - 1).toFile().getName();
-                    neuralNetwork = ModelSerializer.restoreMultiLayerNetwork(fileName);
-                    int firstDelimiter = fileName.indexOf('_');
-                    int secondDelimiter = fileName.lastIndexOf('_');
-                    closeMin = parseDouble(fileName.substring(firstDelimiter + 1, secondDelimiter));
-                    closeMax = parseDouble(fileName.substring(secondDelimiter + 1));
-                    log.info("The model is loaded from the disk: {}", fileName);
-                    lastLearn = DateTime.now();
-                }
-            } catch (IOException ex) {
-                log.error(ex.getMessage());
+    private MultiLayerNetwork trainFromScratch(StockDataSetIterator iterator, List<Candle> candles, ModelRegistry.Entry entry) {
+        LSTMNetwork.Profile profile = networkProfiles.get(instrument, step);
+        log.info("Train {}_{} from scratch: {}", instrument, step, profile);
+        entry.setTraining("SCRATCH");
+        entry.setProfile(profile.toString());
+        MultiLayerNetwork network = LSTMNetwork.createNetwork(iterator, profile);
+        if (validationCandles <= 0) {
+            LSTMNetwork.fit(network, getTrainIterator(iterator, candles), maxEpochs);
+            entry.setEpochs(maxEpochs);
+            return network;
+        }
+
+        // the tail of the window validates the epochs and is left out of the training
+        StockDataSetIterator validation = new StockDataSetIterator(candles, 1.0);
+        validation.useLastCandles(validationCandles);
+        iterator.holdOutLastCandles(validationCandles);
+        LSTMNetwork.FitResult result = LSTMNetwork.fit(network, getTrainIterator(iterator, candles), validation, maxEpochs, patience, minDelta);
+        log.info("Trained {}_{} for {} of {} epochs, {} saved, best validation score {} at epoch {}", instrument, step,
+                result.getEpochs(), result.getMaxEpochs(), result.getEpochsSaved(), result.getBestScore(), result.getBestEpoch());
+        entry.setEpochs(result.getEpochs());
+        entry.setValidationScore(result.getBestScore());
+        return network;
+    }
+
+    /**
+     * A fine-tune keeps the ranges of the training from scratch, so after incremental.max of them, or once half
+     * of the window is new, the network is trained from scratch on the current window. So is a network of another
+     * profile than the configured one, or of an unknown one.
+     */
+    private boolean isFineTuneDue(ModelRegistry.Entry trained, int newCandles, int candles) {
+        return incrementalEpochs > 0 && trained.getFineTunes() < maxFineTunes && newCandles < candles / 2
+                && networkProfiles.get(instrument, step).toString().equals(trained.getProfile());
+    }
+
+    private int countNewCandles(List<Candle> candles) {
+        int count = 0;
+        for (int i = candles.size() - 1; i >= 0 && candles.get(i).getTime().getTime() > trainedUntil; i--) {
+            count++;
+        }
+        return count;
+    }
+
+    private DataSetIterator getTrainIterator(StockDataSetIterator iterator, List<Candle> candles) {
+        // the mapped tensors are floats
+        if (!storeDisk || Nd4j.dataType() != DataBuffer.Type.FLOAT) return iterator;
+
+        try {
+            long key = 31 * MappedDataSetIterator.windowKey(candles) + validationCandles;
+            return MappedDataSetIterator.create(Paths.get(storePath, locationToSave + ".tensors"), key, iterator);
+        } catch (IOException ex) {
+            log.error("Failed map training tensors {}{}: {}", instrument, step, ex.getMessage());
+            return iterator;
+        }
+    }
+
+    private ModelRegistry.Model getModel() {
+        if (modelSlot.get() == null) {
+            ModelRegistry.Model saved = modelRegistry.get(instrument, step);
+            // a training that finished meanwhile keeps its model
+            if (saved != null && modelSlot.setIfEmpty(saved)) {
+                trainedUntil = saved.getEntry().getWindowUntil();
+                lastLearn = DateTime.now();
             }
         }
 
-        return neuralNetwork;
+        return modelSlot.get();
+    }
+
+    // predict window, read from the candle repository indicator cache
+    private static final class Window {
+        private final double[] closes = new double[getVectorSize()];
+        private final double[][] indicators = new double[VECTOR_K + 1][getVectorSize()];
+        // ranges of the window, for models saved without the ranges of their training
+        private final double[] mins = new double[VECTOR_K + 1];
+        private final double[] maxs = new double[VECTOR_K + 1];
+        private final double[] closeRange = new double[2];
+        private final INDArray sequence = createSequence();
+    }
+
+    private static final class Claim {
+        private final double close;
+        private final CompletableFuture<Signal> signal = new CompletableFuture<>();
+        private long sequence;
+
+        private Claim(double close) {
+            this.close = close;
+        }
     }
 }
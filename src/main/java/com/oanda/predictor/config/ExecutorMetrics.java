@@ -0,0 +1,65 @@
+package com.oanda.predictor.config;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Queue wait times and rejections of a thread pool.
+ */
+public class ExecutorMetrics {
+
+    private final LongAdder waited = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * @param queued {@link System#nanoTime()} when the task was submitted
+     */
+    public void started(long queued) {
+        long wait = System.nanoTime() - queued;
+        waited.increment();
+        waitNanos.add(wait);
+        maxWaitNanos.accumulateAndGet(wait, Math::max);
+    }
+
+    public void rejected() {
+        rejected.increment();
+    }
+
+    /**
+     * @param executors the pools of the tasks, their sizes and counts are summed; a null one is not started yet
+     */
+    public Map<String, Object> snapshot(ThreadPoolExecutor... executors) {
+        int poolSize = 0;
+        int active = 0;
+        int queued = 0;
+        long completed = 0;
+        for (ThreadPoolExecutor executor : executors) {
+            if (executor == null) continue;
+            poolSize += executor.getPoolSize();
+            active += executor.getActiveCount();
+            queued += executor.getQueue().size();
+            completed += executor.getCompletedTaskCount();
+        }
+
+        long count = waited.sum();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("poolSize", poolSize);
+        metrics.put("active", active);
+        metrics.put("queued", queued);
+        metrics.put("completed", completed);
+        metrics.put("rejected", rejected.sum());
+        metrics.put("avgWaitMs", count == 0 ? 0.0 : toMillis(waitNanos.sum() / count));
+        metrics.put("maxWaitMs", toMillis(maxWaitNanos.get()));
+        return metrics;
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
@@ -0,0 +1,44 @@
+package com.oanda.predictor.config;
+
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Thread pool that measures how long its tasks wait in the queue and how many of them it rejects.
+ */
+public class MeteredTaskExecutor extends ThreadPoolTaskExecutor {
+
+    private final ExecutorMetrics metrics = new ExecutorMetrics();
+
+    public MeteredTaskExecutor() {
+        setTaskDecorator(task -> {
+            long queued = System.nanoTime();
+            return () -> {
+                metrics.started(queued);
+                task.run();
+            };
+        });
+        setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @Override
+    public void setRejectedExecutionHandler(RejectedExecutionHandler handler) {
+        super.setRejectedExecutionHandler((task, executor) -> {
+            metrics.rejected();
+            handler.rejectedExecution(task, executor);
+        });
+    }
+
+    public Map<String, Object> getMetrics() {
+        ThreadPoolExecutor executor = null;
+        try {
+            executor = getThreadPoolExecutor();
+        } catch (IllegalStateException ex) {
+            // not initialized yet
+        }
+        return metrics.snapshot(executor);
+    }
+}
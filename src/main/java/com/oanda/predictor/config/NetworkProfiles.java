@@ -0,0 +1,42 @@
+package com.oanda.predictor.config;
+
+import com.oanda.predictor.util.LSTMNetwork;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+/**
+ * Network architectures of the properties: predictor.network.profiles.&lt;name&gt;.cell, .layers, .dense and .tbptt.
+ * predictor.network.profile.&lt;symbol&gt;&lt;step&gt; picks the profile of a series, predictor.network.profile of the others.
+ */
+@Component
+public class NetworkProfiles {
+
+    @Autowired
+    private Environment environment;
+
+    @Value("${predictor.network.profile}")
+    private String defaultProfile;
+
+    public LSTMNetwork.Profile get(String symbol, int step) {
+        return get(environment.getProperty("predictor.network.profile." + symbol + step, defaultProfile));
+    }
+
+    public LSTMNetwork.Profile get(String name) {
+        String prefix = "predictor.network.profiles." + name + ".";
+        if (!environment.containsProperty(prefix + "layers")) {
+            throw new IllegalArgumentException("Unknown network profile: " + name);
+        }
+
+        return new LSTMNetwork.Profile(
+                LSTMNetwork.Cell.valueOf(environment.getProperty(prefix + "cell", "graves").trim().toUpperCase()),
+                Arrays.stream(environment.getProperty(prefix + "layers").split(",")).map(String::trim).map(Integer::valueOf).collect(Collectors.toList()),
+                environment.getRequiredProperty(prefix + "dense", Integer.class),
+                environment.getRequiredProperty(prefix + "tbptt", Integer.class)
+        );
+    }
+}
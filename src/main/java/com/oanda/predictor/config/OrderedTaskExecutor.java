@@ -0,0 +1,67 @@
+package com.oanda.predictor.config;
+
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the tasks of a key in the order they were submitted: every key is bound to one of the single-threaded
+ * lanes, so tasks of unrelated keys run in parallel. A full lane makes the caller wait for room, counted as rejected.
+ */
+public class OrderedTaskExecutor {
+
+    private static final long AWAIT_TERMINATION_SECONDS = 30;
+
+    private final ThreadPoolExecutor[] lanes;
+    private final ExecutorMetrics metrics = new ExecutorMetrics();
+
+    public OrderedTaskExecutor(String threadNamePrefix, int threads, int queueCapacity) {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory(threadNamePrefix);
+        lanes = new ThreadPoolExecutor[threads];
+        for (int i = 0; i < threads; i++) {
+            lanes[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<>(Math.max(1, queueCapacity / threads)), threadFactory, this::await);
+        }
+    }
+
+    public void execute(Object key, Runnable task) {
+        long queued = System.nanoTime();
+        lanes[Math.floorMod(key.hashCode(), lanes.length)].execute(() -> {
+            metrics.started(queued);
+            task.run();
+        });
+    }
+
+    /**
+     * Runs the queued tasks, waiting for them up to 30 seconds.
+     */
+    public void shutdown() throws InterruptedException {
+        for (ThreadPoolExecutor lane : lanes) {
+            lane.shutdown();
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(AWAIT_TERMINATION_SECONDS);
+        for (ThreadPoolExecutor lane : lanes) {
+            lane.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public Map<String, Object> getMetrics() {
+        return metrics.snapshot(lanes);
+    }
+
+    // running the task on the caller instead would overtake the queued tasks of its key
+    private void await(Runnable task, ThreadPoolExecutor lane) {
+        metrics.rejected();
+        try {
+            if (lane.isShutdown()) throw new RejectedExecutionException("The lane is shut down");
+            lane.getQueue().put(task);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for the lane", ex);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.oanda.predictor.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.factory.Nd4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+
+import javax.annotation.PostConstruct;
+
+/**
+ * Data type of every ND4J array: datasets, parameters, training and rnnTimeStep. Set before the first array is made,
+ * the actors create theirs on the first candle.
+ */
+@Slf4j
+@Configuration
+public class PrecisionConfig {
+
+    @Value("${predictor.nd4j.dtype}")
+    private String dtype;
+
+    @PostConstruct
+    public void setDataType() {
+        DataBuffer.Type type = DataBuffer.Type.valueOf(dtype.trim().toUpperCase());
+        if (type != DataBuffer.Type.FLOAT && type != DataBuffer.Type.DOUBLE) {
+            // HALF buffers throw "FP16 isn't supported for CPU yet" on the native CPU backend
+            throw new IllegalArgumentException("Unsupported ND4J data type: " + dtype + ", use float or double");
+        }
+
+        Nd4j.setDataType(type);
+        log.info("ND4J data type: {}", Nd4j.dataType());
+    }
+}
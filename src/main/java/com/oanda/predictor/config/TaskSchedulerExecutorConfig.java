@@ -1,33 +1,60 @@
 package com.oanda.predictor.config;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.core.task.TaskExecutor;
 import org.springframework.scheduling.TaskScheduler;
-import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Ingest, predictions and trainings (see TrainingScheduler) run on separate bounded pools,
+ * so a busy one never holds the threads of the others.
+ */
 @Slf4j
 @Configuration
 public class TaskSchedulerExecutorConfig {
 
+    @Value("${predictor.ingest.threads}")
+    private Integer ingestThreads;
+
+    @Value("${predictor.ingest.queue}")
+    private Integer ingestQueue;
+
+    @Value("${predictor.predict.threads}")
+    private Integer predictThreads;
+
+    @Value("${predictor.predict.queue}")
+    private Integer predictQueue;
+
+    /**
+     * The candles of a series are added in order on one lane; a full lane makes the http thread wait,
+     * which slows the EA down instead of losing ticks.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public OrderedTaskExecutor ingestExecutor() {
+        return new OrderedTaskExecutor("Ingest-", ingestThreads, ingestQueue);
+    }
+
     @Bean
-    public TaskExecutor taskExecutor() {
-        ThreadPoolTaskExecutor taskExecutor = new ThreadPoolTaskExecutor();
-        taskExecutor.setCorePoolSize(16);
-        taskExecutor.setMaxPoolSize(128);
-        taskExecutor.setDaemon(false);
-        taskExecutor.setWaitForTasksToCompleteOnShutdown(true);
-        taskExecutor.setAwaitTerminationSeconds(30);
-        taskExecutor.setKeepAliveSeconds(30);
+    public MeteredTaskExecutor predictExecutor() {
+        MeteredTaskExecutor taskExecutor = new MeteredTaskExecutor();
+        taskExecutor.setThreadNamePrefix("Predict-");
+        taskExecutor.setCorePoolSize(predictThreads);
+        taskExecutor.setMaxPoolSize(predictThreads);
+        taskExecutor.setQueueCapacity(predictQueue);
+        // a prediction that does not fit is dropped, the next tick asks for a fresh one anyway
+        taskExecutor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        taskExecutor.setDaemon(true);
         return taskExecutor;
     }
 
     @Bean
     public TaskScheduler taskScheduler() {
         ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
-        scheduler.setPoolSize(32);
+        scheduler.setPoolSize(2);
         scheduler.setDaemon(false);
         scheduler.setWaitForTasksToCompleteOnShutdown(true);
         scheduler.setAwaitTerminationSeconds(30);
@@ -35,4 +62,3 @@ public class TaskSchedulerExecutorConfig {
         return scheduler;
     }
 }
-
@@ -1,12 +1,37 @@
 package com.oanda.predictor.controller;
 
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.oanda.predictor.config.MeteredTaskExecutor;
+import com.oanda.predictor.config.OrderedTaskExecutor;
 import com.oanda.predictor.domain.Candle;
+import com.oanda.predictor.repository.ModelRegistry;
+import com.oanda.predictor.repository.PredictionRepository.Prediction;
 import com.oanda.predictor.service.LearnService;
+import com.oanda.predictor.service.TrainingScheduler;
+import com.oanda.predictor.util.CSVUtil;
+import com.oanda.predictor.util.CandleCodec;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
 
 @Slf4j
 @RestController
@@ -16,13 +41,124 @@ public class ApiController {
     @Autowired
     private LearnService learnService;
 
+    @Autowired
+    private TrainingScheduler trainingScheduler;
+
+    @Autowired
+    private ModelRegistry modelRegistry;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${predictor.poll.timeout}")
+    private Long pollTimeout;
+
+    @Autowired
+    @Qualifier("ingestExecutor")
+    private OrderedTaskExecutor ingestExecutor;
+
+    @Autowired
+    @Qualifier("predictExecutor")
+    private MeteredTaskExecutor predictExecutor;
+
     @PostMapping("/add-candle")
     public void addCandle(@RequestBody Candle candle) {
         learnService.addCandle(candle);
     }
 
+    /**
+     * Candles in the binary format of {@link CandleCodec}.
+     */
+    @PostMapping(value = "/add-candle", consumes = CandleCodec.MEDIA_TYPE)
+    public void addBinaryCandle(InputStream body) throws IOException {
+        Iterator<Candle> candles = CandleCodec.decode(body);
+        while (candles.hasNext()) {
+            learnService.addCandle(candles.next());
+        }
+    }
+
+    /**
+     * Streams a JSON array (or whitespace separated objects) of candles into the repository without buffering the body.
+     */
+    @PostMapping(value = "/add-candles", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Map<String, Object>> addCandles(InputStream body) throws IOException {
+        try (MappingIterator<Candle> candles = objectMapper.readerFor(Candle.class).readValues(body)) {
+            return new ResponseEntity<>(learnService.addCandles(candles), HttpStatus.OK);
+        }
+    }
+
+    @PostMapping(value = "/add-candles", consumes = CandleCodec.MEDIA_TYPE)
+    public ResponseEntity<Map<String, Object>> addBinaryCandles(InputStream body) throws IOException {
+        return new ResponseEntity<>(learnService.addCandles(CandleCodec.decode(body)), HttpStatus.OK);
+    }
+
+    /**
+     * Streams candles of one series in the CSV format of the saved data: time,open,high,low,close,volume.
+     */
+    @PostMapping(value = "/add-candles", consumes = "text/csv", params = {"symbol", "step"})
+    public ResponseEntity<Map<String, Object>> addCandles(String symbol, Integer step, InputStream body) throws IOException {
+        try (Reader reader = new InputStreamReader(body, UTF_8)) {
+            return new ResponseEntity<>(learnService.addCandles(CSVUtil.readCandles(reader, symbol, step)), HttpStatus.OK);
+        }
+    }
+
     @GetMapping(value = "/prediction", params = {"symbol", "step"})
     public ResponseEntity<String> prediction(String symbol, Integer step) {
         return new ResponseEntity<>(learnService.getPredict(symbol, step), HttpStatus.OK);
     }
+
+    /**
+     * Long-poll: answers the prediction as soon as its version is newer than {@code version},
+     * or the current one after predictor.poll.timeout ms. Without a version it answers at once.
+     */
+    @GetMapping(value = "/prediction/next", params = {"symbol", "step"})
+    public DeferredResult<Prediction> nextPrediction(String symbol, Integer step, @RequestParam(defaultValue = "-1") long version) {
+        DeferredResult<Prediction> result = new DeferredResult<>(pollTimeout);
+        CompletableFuture<Prediction> next = learnService.subscribe(symbol, step, version);
+        result.onTimeout(() -> {
+            next.cancel(false);
+            result.setResult(learnService.getPrediction(symbol, step));
+        });
+        next.thenAccept(result::setResult);
+        return result;
+    }
+
+    /**
+     * Signals of many series in one request: /api/predictions?symbols=EURUSD,EURUSD&steps=1,5 answers "UP,NONE".
+     */
+    @GetMapping(value = "/predictions", params = {"symbols", "steps"})
+    public ResponseEntity<String> predictions(@RequestParam List<String> symbols, @RequestParam List<Integer> steps) {
+        if (symbols.size() != steps.size()) {
+            return new ResponseEntity<>("symbols and steps differ in size", HttpStatus.BAD_REQUEST);
+        }
+        return new ResponseEntity<>(String.join(",", learnService.getPredicts(symbols, steps)), HttpStatus.OK);
+    }
+
+    @GetMapping("/prediction/latency")
+    public ResponseEntity<Map<String, Map<String, Object>>> predictionLatency() {
+        return new ResponseEntity<>(learnService.getPredictLatency(), HttpStatus.OK);
+    }
+
+    @GetMapping("/executors")
+    public ResponseEntity<Map<String, Map<String, Object>>> executors() {
+        Map<String, Map<String, Object>> metrics = new LinkedHashMap<>();
+        metrics.put("ingest", ingestExecutor.getMetrics());
+        metrics.put("predict", predictExecutor.getMetrics());
+        metrics.put("train", trainingScheduler.getMetrics());
+        return new ResponseEntity<>(metrics, HttpStatus.OK);
+    }
+
+    @GetMapping("/models")
+    public ResponseEntity<Map<String, ModelRegistry.Entry>> models() {
+        return new ResponseEntity<>(modelRegistry.getIndex(), HttpStatus.OK);
+    }
+
+    /**
+     * A malformed binary candle stream, such as one with an unknown symbol index, is the client's fault.
+     */
+    @ExceptionHandler(CandleCodec.FormatException.class)
+    public ResponseEntity<String> badRequest(CandleCodec.FormatException ex) {
+        log.info("Bad request: {}", ex.getMessage());
+        return new ResponseEntity<>(ex.getMessage(), HttpStatus.BAD_REQUEST);
+    }
 }
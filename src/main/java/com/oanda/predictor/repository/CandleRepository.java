@@ -4,16 +4,12 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.oanda.predictor.domain.Candle;
 import lombok.Getter;
-import lombok.Synchronized;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
 
-import java.sql.Timestamp;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
-import java.util.stream.Collectors;
 
 @Slf4j
 @Repository
@@ -23,84 +19,65 @@ public class CandleRepository {
     @Value("${candle.repository.limit}")
     private Integer limit;
 
-    private final Map<String, TreeMap<Timestamp, Candle>> candles = Maps.newHashMap();
+    private final Map<String, CandleSeries> candles = Maps.newConcurrentMap();
 
     public List<Candle> getCandles(String key) {
-        return Lists.newArrayList(this.candles.getOrDefault(key, Maps.newTreeMap()).values());
+        CandleSeries series = this.candles.get(key);
+        return series == null ? Lists.newArrayList() : series.copyLast(series.getCapacity());
     }
 
     public List<Candle> getCandles(String symbol, int step) {
-        return Lists.newArrayList(this.candles.getOrDefault(getKey(symbol, step), Maps.newTreeMap()).values());
+        return getCandles(getKey(symbol, step));
     }
 
-    @Synchronized
     public void clearAllCandles() {
         this.candles.clear();
     }
 
-    @Synchronized
     public void clearCandles(String symbol, int step) {
-        this.candles.put(getKey(symbol, step), Maps.newTreeMap());
+        CandleSeries series = this.candles.get(getKey(symbol, step));
+        if (series != null) {
+            series.clear();
+        }
     }
 
-    @Synchronized
     public void addCandles(String symbol, int step, List<Candle> candles) {
-        String key = getKey(symbol, step);
-        List<Candle> current = getCandles(key);
-        current.addAll(candles);
-        this.candles.put(key, getMapFromList(current));
+        CandleSeries series = getSeries(symbol, step);
+        candles.forEach(series::add);
     }
 
-    @Synchronized
     public void addCandle(Candle candle) {
-        String key = getKey(candle.getSymbol(), candle.getStep());
-        List<Candle> current = getCandles(key);
-        current.add(candle);
-        this.candles.put(key, getMapFromList(current));
+        getSeries(candle.getSymbol(), candle.getStep()).add(candle);
     }
 
-    @Synchronized
     public Candle getLastCandle(String symbol, int step) {
-        List<Candle> current = getCandles(getKey(symbol, step));
-        return current.isEmpty() ? null : current.get(current.size() - 1);
+        CandleSeries series = this.candles.get(getKey(symbol, step));
+        return series == null ? null : series.getLast();
     }
 
-    @Synchronized
-    public List<Candle> getLastCandles(String symbol, int step, int size) {
-        List<Candle> current = getCandles(getKey(symbol, step));
-
-        if (current.isEmpty()) {
-            return current;
-        }
-
-        if (size > current.size()) {
-            size = current.size() - 1;
-        }
-
-        int fromIndex = current.size() - size;
-        if (fromIndex < 0) {
-            return current;
-        }
+    public List<Candle> copyLastCandles(String symbol, int step, int size) {
+        CandleSeries series = this.candles.get(getKey(symbol, step));
+        return series == null ? Lists.newArrayList() : series.copyLast(size);
+    }
 
-        return current.subList(fromIndex, current.size());
+    /**
+     * Copies closes and cached indicators of the last candles, see {@link CandleSeries#copyLast(double[], double[][])}.
+     */
+    public long copyLastWindow(String symbol, int step, double[] closes, double[][] indicators) {
+        CandleSeries series = this.candles.get(getKey(symbol, step));
+        return series == null ? -1 : series.copyLast(closes, indicators);
     }
 
     public Integer getSize(String symbol, int step) {
-        return getCandles(getKey(symbol, step)).size();
+        CandleSeries series = this.candles.get(getKey(symbol, step));
+        return series == null ? 0 : series.size();
     }
 
     private String getKey(String symbol, int step) {
         return symbol + step;
     }
 
-    private TreeMap<Timestamp, Candle> getMapFromList(List<Candle> current) {
-        if (current.size() > limit * 1.2) {
-            current = current.subList(current.size() - limit, current.size());
-        }
-
-        return current.stream()
-                .filter(candle -> candle.getClose() > 0)
-                .distinct()
-                .collect(Collectors.toMap(Candle::getTime, item -> item, (a, b) -> b, TreeMap::new));
+    private CandleSeries getSeries(String symbol, int step) {
+        return this.candles.computeIfAbsent(getKey(symbol, step), key -> new CandleSeries(symbol, step, limit));
     }
 }
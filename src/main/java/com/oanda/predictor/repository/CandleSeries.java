@@ -0,0 +1,209 @@
+package com.oanda.predictor.repository;
+
+import com.oanda.predictor.domain.Candle;
+import com.oanda.predictor.util.IndicatorEngine;
+import lombok.Getter;
+import lombok.Synchronized;
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fixed capacity ring buffer of candles for one (symbol, step) series.
+ * Candle fields are kept in parallel primitive arrays: a new candle is appended in O(1),
+ * the still-forming (last) candle is updated in place.
+ * Every series has its own lock, so unrelated instruments are written in parallel.
+ * Indicators are cached next to the candles: the value stored for a candle is calculated on the
+ * candles before it, so the engine only advances when a new candle closes the previous one.
+ */
+@Slf4j
+public class CandleSeries {
+
+    @Getter
+    private final String symbol;
+    @Getter
+    private final int step;
+    @Getter
+    private final int capacity;
+
+    private final long[] times;
+    private final double[] bids;
+    private final double[] asks;
+    private final double[] opens;
+    private final double[] highs;
+    private final double[] lows;
+    private final double[] closes;
+    private final int[] volumes;
+    private final double[][] indicators;
+
+    private IndicatorEngine engine = new IndicatorEngine();
+
+    // total count of appended candles, the last candle is at (sequence - 1) % capacity
+    private long sequence = 0;
+
+    public CandleSeries(String symbol, int step, int capacity) {
+        this.symbol = symbol;
+        this.step = step;
+        this.capacity = capacity;
+        this.times = new long[capacity];
+        this.bids = new double[capacity];
+        this.asks = new double[capacity];
+        this.opens = new double[capacity];
+        this.highs = new double[capacity];
+        this.lows = new double[capacity];
+        this.closes = new double[capacity];
+        this.volumes = new int[capacity];
+        this.indicators = new double[IndicatorEngine.SIZE][capacity];
+    }
+
+    @Synchronized
+    public int size() {
+        return (int) Math.min(sequence, capacity);
+    }
+
+    @Synchronized
+    public void clear() {
+        sequence = 0;
+        engine = new IndicatorEngine();
+    }
+
+    /**
+     * Appends the candle, or updates it in place when a candle with the same time is already stored.
+     *
+     * @return false if the candle was rejected (empty, or older than the buffer)
+     */
+    @Synchronized
+    public boolean add(Candle candle) {
+        if (candle.getTime() == null || candle.getClose() <= 0) return false;
+
+        long time = candle.getTime().getTime();
+        if (sequence == 0 || time > times[index(sequence - 1)]) {
+            if (sequence > 0) {
+                int closed = index(sequence - 1);
+                engine.update(highs[closed], lows[closed], closes[closed]);
+            }
+            write(index(sequence), time, candle);
+            writeIndicators(index(sequence));
+            sequence++;
+            return true;
+        }
+
+        long position = find(time);
+        if (position < 0) {
+            log.debug("Skip out of order candle {}{}: {}", symbol, step, candle.getTime());
+            return false;
+        }
+
+        write(index(position), time, candle);
+        if (position < sequence - 1) {
+            // a closed candle is changed: the engine state is stale
+            rebuildIndicators();
+        }
+        return true;
+    }
+
+    @Synchronized
+    public Candle getLast() {
+        return sequence == 0 ? null : read(sequence - 1);
+    }
+
+    /**
+     * Copy of the last {@code size} candles taken under the series lock.
+     */
+    @Synchronized
+    public List<Candle> copyLast(int size) {
+        int count = Math.min(size, size());
+        List<Candle> candles = new ArrayList<>(count);
+        for (long position = sequence - count; position < sequence; position++) {
+            candles.add(read(position));
+        }
+        return candles;
+    }
+
+    /**
+     * Copies closes and cached indicators of the last {@code closes.length} candles.
+     *
+     * @return time of the last copied candle, -1 if the series is shorter than the requested window
+     */
+    @Synchronized
+    public long copyLast(double[] closes, double[][] indicators) {
+        int size = closes.length;
+        if (size > size()) return -1;
+
+        for (int i = 0; i < size; i++) {
+            int index = index(sequence - size + i);
+            closes[i] = this.closes[index];
+            for (int n = 0; n < IndicatorEngine.SIZE; n++) {
+                indicators[n][i] = this.indicators[n][index];
+            }
+        }
+        return times[index(sequence - 1)];
+    }
+
+    private void writeIndicators(int index) {
+        for (int n = 0; n < IndicatorEngine.SIZE; n++) {
+            indicators[n][index] = engine.value(n);
+        }
+    }
+
+    private void rebuildIndicators() {
+        engine = new IndicatorEngine();
+        for (long position = sequence - size(); position < sequence; position++) {
+            int index = index(position);
+            writeIndicators(index);
+            if (position < sequence - 1) {
+                engine.update(highs[index], lows[index], closes[index]);
+            }
+        }
+    }
+
+    private long find(long time) {
+        long low = sequence - size();
+        long high = sequence - 1;
+        while (low <= high) {
+            long middle = (low + high) >>> 1;
+            long middleTime = times[index(middle)];
+            if (middleTime < time) {
+                low = middle + 1;
+            } else if (middleTime > time) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    private int index(long position) {
+        return (int) (position % capacity);
+    }
+
+    private void write(int index, long time, Candle candle) {
+        times[index] = time;
+        bids[index] = candle.getBid();
+        asks[index] = candle.getAsk();
+        opens[index] = candle.getOpen();
+        highs[index] = candle.getHigh();
+        lows[index] = candle.getLow();
+        closes[index] = candle.getClose();
+        volumes[index] = candle.getVolume();
+    }
+
+    private Candle read(long position) {
+        int index = index(position);
+        Candle candle = new Candle();
+        candle.setTime(new Timestamp(times[index]));
+        candle.setSymbol(symbol);
+        candle.setStep(step);
+        candle.setBid(bids[index]);
+        candle.setAsk(asks[index]);
+        candle.setOpen(opens[index]);
+        candle.setHigh(highs[index]);
+        candle.setLow(lows[index]);
+        candle.setClose(closes[index]);
+        candle.setVolume(volumes[index]);
+        return candle;
+    }
+}
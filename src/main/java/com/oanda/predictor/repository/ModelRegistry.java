@@ -0,0 +1,283 @@
+package com.oanda.predictor.repository;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.oanda.predictor.util.CSVUtil;
+import com.oanda.predictor.util.InferenceEngine;
+import lombok.Data;
+import lombok.Getter;
+import lombok.Synchronized;
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.util.ModelSerializer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Repository;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Saved networks and their metadata. NeuralNetworks.json indexes the latest snapshot of every series;
+ * snapshots and index are written to a temporary file first and renamed over the previous one, so a crash
+ * never leaves a half written model behind. At startup all indexed models are loaded in parallel,
+ * once the ND4J data type is set.
+ */
+@Slf4j
+@Repository
+@DependsOn("precisionConfig")
+public class ModelRegistry {
+
+    public static final String INDEX = "NeuralNetworks.json";
+
+    @Data
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Entry {
+        private String symbol;
+        private int step;
+        // increased on every save, 0 for a model imported from a name with its close range
+        private long version;
+        private String file;
+        private String profile;
+        private String dtype;
+        // normalization ranges of the training window, the predictions scale with them too;
+        // indicator mins and maxs are null for an imported model
+        private double closeMin;
+        private double closeMax;
+        private double[] mins;
+        private double[] maxs;
+        // times of the first and the last candle of the training window
+        private long windowFrom;
+        private long windowUntil;
+        private int candles;
+        // SCRATCH or FINE_TUNE
+        private String training;
+        private int epochs;
+        // fine-tunes since the training from scratch
+        private int fineTunes;
+        // best validation score of a training from scratch, null without validation
+        private Double validationScore;
+        private long savedAt;
+    }
+
+    @Getter
+    public static class Model {
+        private final Entry entry;
+        private final MultiLayerNetwork network;
+        // stateless predictions of the network, from any thread
+        private final InferenceEngine engine;
+
+        public Model(Entry entry, MultiLayerNetwork network) {
+            this.entry = entry;
+            this.network = network;
+            this.engine = new InferenceEngine(network);
+        }
+    }
+
+    @Value("${neuralnetwork.store.disk}")
+    private Boolean storeDisk;
+
+    @Value("${neuralnetwork.store.path}")
+    private String storePath;
+
+    @Value("${predictor.model.load.threads}")
+    private Integer loadThreads;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Map<String, Entry> index = new TreeMap<>();
+    private final Map<String, CompletableFuture<Model>> models = Maps.newConcurrentMap();
+    // series without a model, so the directory is not searched for legacy files again
+    private final Set<String> missing = Sets.newConcurrentHashSet();
+
+    @PostConstruct
+    public void init() throws IOException {
+        load();
+    }
+
+    /**
+     * Starts loading every indexed model, {@link #get} waits only for the model it asks for.
+     *
+     * @return completed when all models are loaded
+     */
+    public CompletableFuture<Void> load() throws IOException {
+        if (!storeDisk) return CompletableFuture.completedFuture(null);
+
+        Path indexFile = Paths.get(storePath, INDEX);
+        if (Files.exists(indexFile)) {
+            Map<String, Entry> entries = mapper.readValue(indexFile.toFile(), new TypeReference<TreeMap<String, Entry>>() {
+            });
+            index.putAll(entries);
+        }
+        if (index.isEmpty()) return CompletableFuture.completedFuture(null);
+
+        long start = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(loadThreads, index.size()), new CustomizableThreadFactory("ModelLoad-"));
+        List<CompletableFuture<Model>> loads = new ArrayList<>();
+        for (Map.Entry<String, Entry> entry : getIndex().entrySet()) {
+            CompletableFuture<Model> load = CompletableFuture.supplyAsync(() -> restore(entry.getValue()), executor);
+            models.put(entry.getKey(), load);
+            loads.add(load);
+        }
+        executor.shutdown();
+
+        return CompletableFuture.allOf(loads.toArray(new CompletableFuture[0])).handle((result, ex) -> {
+            log.info("{} models loaded in {} ms with {} threads", loads.size(), (System.nanoTime() - start) / 1_000_000, loadThreads);
+            return null;
+        });
+    }
+
+    /**
+     * @return the latest model of the series, null if it has none
+     */
+    public Model get(String symbol, int step) {
+        String key = symbol + step;
+        CompletableFuture<Model> model = models.get(key);
+        if (model == null) {
+            if (!storeDisk || missing.contains(key)) return null;
+            model = importLegacy(symbol, step);
+            if (model == null) {
+                missing.add(key);
+                return null;
+            }
+        }
+
+        try {
+            return model.join();
+        } catch (CompletionException ex) {
+            log.error("Failed load model {}: {}", key, ex.getCause().getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Writes the network as the next snapshot of its series, then points the index to it.
+     * The file, version and savedAt of the entry are set here.
+     */
+    @Synchronized
+    public void save(Entry entry, MultiLayerNetwork network) throws IOException {
+        String key = entry.getSymbol() + entry.getStep();
+        Entry previous = index.get(key);
+        entry.setVersion(previous == null ? 1 : previous.getVersion() + 1);
+        entry.setFile("NeuralNetwork" + key + "_v" + entry.getVersion() + ".zip");
+        entry.setSavedAt(System.currentTimeMillis());
+
+        Path file = Paths.get(storePath, entry.getFile());
+        Path temp = Files.createTempFile(file.toAbsolutePath().getParent(), entry.getFile(), ".tmp");
+        try {
+            ModelSerializer.writeModel(network, temp.toFile(), true);
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+
+        index.put(key, entry);
+        writeIndex();
+        models.put(key, CompletableFuture.completedFuture(new Model(entry, network)));
+        missing.remove(key);
+        if (previous != null && !previous.getFile().equals(entry.getFile())) {
+            Files.deleteIfExists(Paths.get(storePath, previous.getFile()));
+        }
+        log.info("The model is saved to disk: {}", file);
+    }
+
+    @Synchronized
+    public Map<String, Entry> getIndex() {
+        return new TreeMap<>(index);
+    }
+
+    private void writeIndex() throws IOException {
+        Path file = Paths.get(storePath, INDEX);
+        Path temp = Files.createTempFile(file.toAbsolutePath().getParent(), INDEX, ".tmp");
+        try {
+            mapper.writerWithDefaultPrettyPrinter().writeValue(temp.toFile(), index);
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private Model restore(Entry entry) {
+        try {
+            MultiLayerNetwork network = ModelSerializer.restoreMultiLayerNetwork(Paths.get(storePath, entry.getFile()).toFile());
+            log.info("The model is loaded from the disk: {}", entry.getFile());
+            return new Model(entry, network);
+        } catch (IOException ex) {
+            throw new CompletionException(ex);
+        }
+    }
+
+    /**
+     * Indexes the newest NeuralNetwork&lt;symbol&gt;&lt;step&gt;_&lt;closeMin&gt;_&lt;closeMax&gt; file of the series,
+     * as they were saved before the index.
+     */
+    @Synchronized
+    private CompletableFuture<Model> importLegacy(String symbol, int step) {
+        String key = symbol + step;
+        if (models.containsKey(key)) return models.get(key);
+
+        List<Path> paths = new ArrayList<>();
+        try (DirectoryStream<Path> dirStream = Files.newDirectoryStream(Paths.get(storePath), "NeuralNetwork" + key + "_*")) {
+            dirStream.forEach(path -> {
+                String name = path.getFileName().toString();
+                if (!name.endsWith(".csv") && !name.endsWith(".tmp") && !name.endsWith(".zip")) paths.add(path);
+            });
+        } catch (IOException ex) {
+            log.error("Failed list models {}: {}", key, ex.getMessage());
+            return null;
+        }
+        if (paths.isEmpty()) return null;
+
+        paths.sort(Comparator.comparing(path -> path.toFile().lastModified()));
+        String fileName = paths.get(paths.size() - 1).getFileName().toString();
+        int firstDelimiter = fileName.indexOf('_');
+        int secondDelimiter = fileName.lastIndexOf('_');
+        Entry entry = new Entry();
+        entry.setSymbol(symbol);
+        entry.setStep(step);
+        entry.setFile(fileName);
+        try {
+            entry.setCloseMin(Double.parseDouble(fileName.substring(firstDelimiter + 1, secondDelimiter)));
+            entry.setCloseMax(Double.parseDouble(fileName.substring(secondDelimiter + 1)));
+        } catch (NumberFormatException | StringIndexOutOfBoundsException ex) {
+            log.error("Unknown model file {}", fileName);
+            return null;
+        }
+        entry.setWindowUntil(CSVUtil.getLastTime(Paths.get(storePath, fileName + "Data.csv").toString()));
+        entry.setSavedAt(paths.get(paths.size() - 1).toFile().lastModified());
+
+        CompletableFuture<Model> model;
+        try {
+            model = CompletableFuture.completedFuture(restore(entry));
+        } catch (CompletionException ex) {
+            log.error("Failed load model {}: {}", fileName, ex.getCause().getMessage());
+            return null;
+        }
+        index.put(key, entry);
+        models.put(key, model);
+        try {
+            writeIndex();
+        } catch (IOException ex) {
+            log.error("Failed save model index: {}", ex.getMessage());
+        }
+        return model;
+    }
+}
@@ -0,0 +1,97 @@
+package com.oanda.predictor.repository;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The current model of a series. Predictions lease it without a lock; a new model replaces it atomically and the
+ * replaced one is released when its last lease is closed, so in-flight predictions finish on the model they started on.
+ */
+@Slf4j
+public class ModelSlot {
+
+    private final AtomicReference<Holder> current = new AtomicReference<>();
+
+    /**
+     * @return a lease of the current model, to be closed after use, null if there is no model yet
+     */
+    public Lease acquire() {
+        while (true) {
+            Holder holder = current.get();
+            if (holder == null) return null;
+            if (holder.retain()) return new Lease(holder);
+            // replaced meanwhile, lease the new one
+        }
+    }
+
+    /**
+     * @return the current model, only to read it; a prediction leases it with {@link #acquire}
+     */
+    public ModelRegistry.Model get() {
+        Holder holder = current.get();
+        return holder == null ? null : holder.model;
+    }
+
+    public void set(ModelRegistry.Model model) {
+        Holder replaced = current.getAndSet(new Holder(model));
+        if (replaced != null) replaced.release();
+    }
+
+    /**
+     * @return false if the slot already has a model, which is kept
+     */
+    public boolean setIfEmpty(ModelRegistry.Model model) {
+        return current.compareAndSet(null, new Holder(model));
+    }
+
+    private static class Holder {
+
+        private final ModelRegistry.Model model;
+        // one for the slot, one per open lease, 0 once released
+        private final AtomicInteger references = new AtomicInteger(1);
+
+        private Holder(ModelRegistry.Model model) {
+            this.model = model;
+        }
+
+        private boolean retain() {
+            while (true) {
+                int count = references.get();
+                if (count == 0) return false;
+                if (references.compareAndSet(count, count + 1)) return true;
+            }
+        }
+
+        private void release() {
+            if (references.decrementAndGet() == 0) {
+                // nothing predicts on it anymore, drop its worker copies now
+                model.getEngine().release();
+                log.debug("Model {}{} v{} released", model.getEntry().getSymbol(), model.getEntry().getStep(), model.getEntry().getVersion());
+            }
+        }
+    }
+
+    public static class Lease implements AutoCloseable {
+
+        private final Holder holder;
+        private boolean closed;
+
+        private Lease(Holder holder) {
+            this.holder = holder;
+        }
+
+        public ModelRegistry.Model getModel() {
+            return holder.model;
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                holder.release();
+            }
+        }
+    }
+}
@@ -2,23 +2,114 @@ package com.oanda.predictor.repository;
 
 import com.google.common.collect.Maps;
 import lombok.Synchronized;
+import lombok.Value;
 import org.springframework.stereotype.Repository;
 
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
+/**
+ * Last signal of every (symbol, step), versioned so clients can wait for the next change instead of polling.
+ */
 @Repository
 public class PredictionRepository {
 
     public enum Signal {UP, DOWN, NONE}
 
-    private final Map<String, Signal> predicts = Maps.newConcurrentMap();
+    @Value
+    public static class Prediction {
+        String symbol;
+        int step;
+        Signal signal;
+        // time of the candle the signal was predicted on, null before the first prediction
+        Timestamp candleTime;
+        // 0 before the first prediction, then increased on every change of the signal or of its candle
+        long version;
+    }
+
+    private final Map<String, Slot> predicts = Maps.newConcurrentMap();
+
+    public String getPredict(String symbol, int step) {
+        return getSignal(symbol, step).name();
+    }
+
+    public Signal getSignal(String symbol, int step) {
+        return getPrediction(symbol, step).getSignal();
+    }
+
+    public Prediction getPrediction(String symbol, int step) {
+        return getSlot(symbol, step).getPrediction();
+    }
+
+    /**
+     * @param candleTime time of the last candle of the predicted window
+     */
+    public void addPredict(String symbol, int step, Signal signal, long candleTime) {
+        getSlot(symbol, step).update(signal, new Timestamp(candleTime)).forEach(waiter -> waiter.complete(getPrediction(symbol, step)));
+    }
 
-    public String getPredict(String symbol) {
-        return predicts.getOrDefault(symbol, Signal.NONE).name();
+    /**
+     * @return the prediction at once if its version is newer than {@code version}, else on its next change
+     */
+    public CompletableFuture<Prediction> subscribe(String symbol, int step, long version) {
+        return getSlot(symbol, step).subscribe(version);
     }
 
-    @Synchronized
-    public void addPredict(String symbol, Signal predict) {
-        predicts.put(symbol, predict);
+    private Slot getSlot(String symbol, int step) {
+        return predicts.computeIfAbsent(symbol + step, key -> new Slot(new Prediction(symbol, step, Signal.NONE, null, 0)));
+    }
+
+    private static class Slot {
+
+        private Prediction prediction;
+        private List<CompletableFuture<Prediction>> waiters = new ArrayList<>();
+
+        private Slot(Prediction prediction) {
+            this.prediction = prediction;
+        }
+
+        @Synchronized
+        private Prediction getPrediction() {
+            return prediction;
+        }
+
+        /**
+         * @return the waiters to complete, outside of the lock
+         */
+        @Synchronized
+        private List<CompletableFuture<Prediction>> update(Signal signal, Timestamp candleTime) {
+            if (signal == prediction.getSignal() && candleTime.equals(prediction.getCandleTime())) {
+                return Collections.emptyList();
+            }
+
+            prediction = new Prediction(prediction.getSymbol(), prediction.getStep(), signal, candleTime, prediction.getVersion() + 1);
+            List<CompletableFuture<Prediction>> notified = waiters;
+            waiters = new ArrayList<>();
+            return notified;
+        }
+
+        @Synchronized
+        private CompletableFuture<Prediction> subscribe(long version) {
+            if (prediction.getVersion() > version) {
+                return CompletableFuture.completedFuture(prediction);
+            }
+
+            CompletableFuture<Prediction> waiter = new CompletableFuture<>();
+            // a timed out waiter leaves the list, long-polls do not pile up on quiet series
+            waiter.whenComplete((result, ex) -> {
+                if (ex != null) removeWaiter(waiter);
+            });
+            waiters.add(waiter);
+            return waiter;
+        }
+
+        @Synchronized
+        private void removeWaiter(CompletableFuture<Prediction> waiter) {
+            waiters.remove(waiter);
+        }
     }
 }
@@ -3,20 +3,39 @@ package com.oanda.predictor.service;
 import akka.actor.ActorRef;
 import akka.actor.ActorSystem;
 import akka.actor.Props;
+import akka.pattern.PatternsCS;
+import akka.util.Timeout;
 import com.google.common.collect.Maps;
 import com.oanda.predictor.actor.LearnActor;
 import com.oanda.predictor.actor.Messages;
 import com.oanda.predictor.actor.SpringDIActor;
+import com.oanda.predictor.config.OrderedTaskExecutor;
 import com.oanda.predictor.domain.Candle;
 import com.oanda.predictor.repository.CandleRepository;
 import com.oanda.predictor.repository.PredictionRepository;
-import lombok.Synchronized;
+import com.oanda.predictor.util.LatencyStats;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static com.oanda.predictor.repository.PredictionRepository.Prediction;
+import static com.oanda.predictor.repository.PredictionRepository.Signal;
 
 @Slf4j
 @Service
@@ -28,19 +47,31 @@ public class LearnService {
     @Autowired
     private PredictionRepository predictionRepository;
 
+    @Value("${predictor.predict.timeout}")
+    private Long predictTimeout;
+
     private final ActorSystem actorSystem = ActorSystem.create("LearnSystem");
     private final Map<String, ActorRef> actors = Maps.newConcurrentMap();
+    private final LatencyStats predictLatency = new LatencyStats();
 
-    @Async
-    @Synchronized
+    @Autowired
+    @Qualifier("ingestExecutor")
+    private OrderedTaskExecutor ingestExecutor;
+
+    /**
+     * Adds the candle on the ingest lane of its series, after the candles of the series sent before it.
+     */
     public void addCandle(Candle candle) {
+        ingestExecutor.execute(candle.getKey(), () -> ingest(candle));
+    }
+
+    /**
+     * Adds the candle on the calling thread, for callers that keep the order of their candles themselves.
+     */
+    public void ingest(Candle candle) {
         candleRepository.addCandle(candle);
 
-        ActorRef actor = actors.getOrDefault(candle.getKey(), null);
-        if (actor == null) {
-            actor = actorSystem.actorOf(Props.create(SpringDIActor.class, LearnActor.class, candle.getSymbol(), candle.getStep()), "LearnActor_" + candle.getSymbol() + "_" + candle.getStep());
-            actors.put(candle.getKey(), actor);
-        }
+        ActorRef actor = getActor(candle);
 
         if (candle.getAsk() > 0 && candle.getBid() > 0) {
             actor.tell(Messages.LEARN, actorSystem.guardian());
@@ -49,11 +80,130 @@ public class LearnService {
         log.debug("Candle list size {} {}: added {}, total: {}", candle.getSymbol(), candle.getStep(), 1, candleRepository.getSize(candle.getSymbol(), candle.getStep()));
     }
 
+    /**
+     * Adds the candles in one pass as they are read, then sends at most one LEARN per series.
+     *
+     * @return count of added candles and the ingest throughput
+     */
+    public Map<String, Object> addCandles(Iterator<Candle> candles) {
+        long start = System.nanoTime();
+        Map<String, Candle> series = new HashMap<>();
+        Set<String> learn = new HashSet<>();
+        long count = 0;
+        while (candles.hasNext()) {
+            Candle candle = candles.next();
+            candleRepository.addCandle(candle);
+            series.putIfAbsent(candle.getKey(), candle);
+            if (candle.getAsk() > 0 && candle.getBid() > 0) {
+                learn.add(candle.getKey());
+            }
+            count++;
+        }
+
+        series.forEach((key, candle) -> {
+            ActorRef actor = getActor(candle);
+            if (learn.contains(key)) {
+                actor.tell(Messages.LEARN, actorSystem.guardian());
+            }
+        });
+
+        double seconds = (System.nanoTime() - start) / (double) TimeUnit.SECONDS.toNanos(1);
+        long candlesPerSec = seconds > 0 ? Math.round(count / seconds) : count;
+        log.info("Candles added: {}, series: {}, candles/sec: {}", count, series.size(), candlesPerSec);
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("candles", count);
+        report.put("series", series.size());
+        report.put("seconds", seconds);
+        report.put("candlesPerSec", candlesPerSec);
+        return report;
+    }
+
+    private ActorRef getActor(Candle candle) {
+        return actors.computeIfAbsent(candle.getKey(), key -> actorSystem.actorOf(Props.create(SpringDIActor.class, LearnActor.class, candle.getSymbol(), candle.getStep()), "LearnActor_" + candle.getSymbol() + "_" + candle.getStep()));
+    }
+
+    /**
+     * Signal of the last candle once the actor has it, the last known signal past predictor.predict.timeout ms.
+     */
+    public CompletableFuture<Signal> predict(String symbol, int step) {
+        String key = symbol + step;
+        ActorRef actor = actors.getOrDefault(key, null);
+        if (actor == null) {
+            return CompletableFuture.completedFuture(predictionRepository.getSignal(symbol, step));
+        }
+
+        long start = System.nanoTime();
+        return PatternsCS.ask(actor, Messages.PREDICT, new Timeout(predictTimeout, TimeUnit.MILLISECONDS))
+                .toCompletableFuture()
+                .handle((signal, ex) -> {
+                    predictLatency.record(key, System.nanoTime() - start);
+                    if (ex == null) return (Signal) signal;
+
+                    predictLatency.timeout(key);
+                    log.debug("Predict {} exceeded {} ms: {}", key, predictTimeout, ex.getMessage());
+                    return predictionRepository.getSignal(symbol, step);
+                });
+    }
+
     public String getPredict(String symbol, int step) {
-        ActorRef actor = actors.getOrDefault(symbol + step, null);
-        if (actor != null) {
-            actor.tell(Messages.PREDICT, actorSystem.guardian());
+        return getPredicts(Collections.singletonList(symbol), Collections.singletonList(step)).get(0);
+    }
+
+    /**
+     * Asks every actor for the signal of its last candle at once and waits for all of them up to
+     * predictor.predict.timeout ms, a late one falls back to its last known signal.
+     */
+    public List<String> getPredicts(List<String> symbols, List<Integer> steps) {
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(predictTimeout);
+        Timeout timeout = new Timeout(predictTimeout, TimeUnit.MILLISECONDS);
+
+        List<CompletableFuture<Object>> futures = new ArrayList<>(symbols.size());
+        for (int i = 0; i < symbols.size(); i++) {
+            ActorRef actor = actors.getOrDefault(symbols.get(i) + steps.get(i), null);
+            futures.add(actor == null ? null : PatternsCS.ask(actor, Messages.PREDICT, timeout).toCompletableFuture());
+        }
+
+        List<String> predicts = new ArrayList<>(symbols.size());
+        for (int i = 0; i < symbols.size(); i++) {
+            predicts.add(awaitPredict(symbols.get(i), steps.get(i), futures.get(i), start, deadline));
         }
-        return predictionRepository.getPredict(symbol);
+        return predicts;
+    }
+
+    private String awaitPredict(String symbol, int step, CompletableFuture<Object> future, long start, long deadline) {
+        if (future == null) {
+            return predictionRepository.getPredict(symbol, step);
+        }
+
+        String key = symbol + step;
+        try {
+            Object signal = future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            return ((Signal) signal).name();
+        } catch (TimeoutException | ExecutionException ex) {
+            predictLatency.timeout(key);
+            log.debug("Predict {} exceeded {} ms: {}", key, predictTimeout, ex.getMessage());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            predictLatency.record(key, System.nanoTime() - start);
+        }
+        return predictionRepository.getPredict(symbol, step);
+    }
+
+    public Prediction getPrediction(String symbol, int step) {
+        return predictionRepository.getPrediction(symbol, step);
+    }
+
+    /**
+     * See {@link PredictionRepository#subscribe(String, int, long)}.
+     */
+    public CompletableFuture<Prediction> subscribe(String symbol, int step, long version) {
+        return predictionRepository.subscribe(symbol, step, version);
+    }
+
+    public Map<String, Map<String, Object>> getPredictLatency() {
+        return predictLatency.snapshot();
     }
 }
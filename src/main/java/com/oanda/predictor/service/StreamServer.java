@@ -0,0 +1,130 @@
+package com.oanda.predictor.service;
+
+import com.google.common.collect.Sets;
+import com.oanda.predictor.domain.Candle;
+import com.oanda.predictor.util.CandleCodec;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+/**
+ * Long-lived TCP channel next to the /api controller: an EA connects once, then streams candles in the
+ * format of {@link CandleCodec} and reads back a "symbol,step,signal" line as soon as every live candle is predicted.
+ * The channel is not authenticated, so it is off by default and binds to the loopback address when enabled;
+ * connections beyond predictor.stream.max.connections are closed at once.
+ */
+@Slf4j
+@Service
+public class StreamServer {
+
+    @Value("${predictor.stream.port}")
+    private Integer port;
+
+    @Value("${predictor.stream.address}")
+    private String address;
+
+    @Value("${predictor.stream.max.connections}")
+    private Integer maxConnections;
+
+    @Autowired
+    private LearnService learnService;
+
+    @Getter
+    private int localPort = -1;
+
+    private ServerSocket serverSocket;
+    private ExecutorService connections;
+    private final Set<Socket> sockets = Sets.newConcurrentHashSet();
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (port < 0) return;
+
+        serverSocket = new ServerSocket(port, 0, InetAddress.getByName(address));
+        localPort = serverSocket.getLocalPort();
+        // the accepting thread and one per connection
+        connections = Executors.newFixedThreadPool(maxConnections + 1, new CustomizableThreadFactory("Stream-"));
+        connections.execute(this::accept);
+        log.info("Stream channel listens on {}:{}, up to {} connections", address, localPort, maxConnections);
+    }
+
+    @PreDestroy
+    public void stop() throws IOException {
+        if (serverSocket != null) serverSocket.close();
+        for (Socket socket : sockets) {
+            socket.close();
+        }
+        if (connections != null) connections.shutdownNow();
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                // only this thread adds, so the count cannot grow past the check
+                if (sockets.size() >= maxConnections) {
+                    log.warn("Stream client {} refused, {} connections open", socket.getRemoteSocketAddress(), sockets.size());
+                    socket.close();
+                    continue;
+                }
+                socket.setTcpNoDelay(true);
+                sockets.add(socket);
+                connections.execute(() -> serve(socket));
+            } catch (IOException ex) {
+                if (!serverSocket.isClosed()) log.error("Stream accept failed: {}", ex.getMessage());
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        log.info("Stream client connected: {}", socket.getRemoteSocketAddress());
+        try (Socket client = socket) {
+            OutputStream output = new BufferedOutputStream(client.getOutputStream());
+            Iterator<Candle> candles = CandleCodec.decode(new BufferedInputStream(client.getInputStream()));
+            while (candles.hasNext()) {
+                Candle candle = candles.next();
+                // on this thread, so the prediction sees the candle
+                learnService.ingest(candle);
+                if (candle.getAsk() > 0 && candle.getBid() > 0) {
+                    learnService.predict(candle.getSymbol(), candle.getStep())
+                            .thenAccept(signal -> push(output, candle.getSymbol() + "," + candle.getStep() + "," + signal.name() + "\n"));
+                }
+            }
+        } catch (IOException | RuntimeException ex) {
+            log.info("Stream client {} failed: {}", socket.getRemoteSocketAddress(), ex.getMessage());
+        } finally {
+            sockets.remove(socket);
+        }
+        log.info("Stream client disconnected: {}", socket.getRemoteSocketAddress());
+    }
+
+    private void push(OutputStream output, String line) {
+        synchronized (output) {
+            try {
+                output.write(line.getBytes(US_ASCII));
+                output.flush();
+            } catch (IOException ex) {
+                log.debug("Stream push failed: {}", ex.getMessage());
+            }
+        }
+    }
+}
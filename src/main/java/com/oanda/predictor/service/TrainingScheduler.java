@@ -0,0 +1,143 @@
+package com.oanda.predictor.service;
+
+import com.google.common.collect.Maps;
+import com.oanda.predictor.config.ExecutorMetrics;
+import lombok.Synchronized;
+import lombok.extern.slf4j.Slf4j;
+import org.joda.time.DateTime;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Map;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs network trainings on their own threads, apart from the predictions.
+ * At most one training per series is pending or running, which bounds the queue by the series count;
+ * the series trained the longest ago goes first.
+ */
+@Slf4j
+@Service
+public class TrainingScheduler {
+
+    @Value("${predictor.train.threads}")
+    private Integer threads;
+
+    private ThreadPoolExecutor executor;
+    private final Map<String, Training> trainings = Maps.newConcurrentMap();
+    private final AtomicLong sequence = new AtomicLong();
+    private final ExecutorMetrics metrics = new ExecutorMetrics();
+
+    @PostConstruct
+    public void init() {
+        executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<>(), new CustomizableThreadFactory("Training-"));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        trainings.keySet().forEach(this::cancel);
+        executor.shutdownNow();
+    }
+
+    /**
+     * @param lastLearn end of the previous training of the series, null if it was never trained
+     * @return false if a training of the series is already pending or running
+     */
+    public boolean submit(String key, DateTime lastLearn, Runnable task) {
+        Training training = new Training(key, lastLearn == null ? 0L : lastLearn.getMillis(), sequence.getAndIncrement(), task);
+        if (trainings.putIfAbsent(key, training) != null) {
+            metrics.rejected();
+            return false;
+        }
+
+        executor.execute(training);
+        log.debug("Training {} queued, pending: {}", key, executor.getQueue().size());
+        return true;
+    }
+
+    /**
+     * Removes a pending training of the series, or interrupts the running one.
+     *
+     * @return false if there was no training of the series
+     */
+    public boolean cancel(String key) {
+        Training training = trainings.remove(key);
+        if (training == null) return false;
+
+        executor.remove(training);
+        training.cancel();
+        log.info("Training {} cancelled", key);
+        return true;
+    }
+
+    public int getPending() {
+        return executor.getQueue().size();
+    }
+
+    public Map<String, Object> getMetrics() {
+        return metrics.snapshot(executor);
+    }
+
+    private class Training implements Runnable, Comparable<Training> {
+
+        private final String key;
+        private final long lastLearn;
+        private final long order;
+        private final Runnable task;
+        private final long queued = System.nanoTime();
+        private boolean cancelled = false;
+        private Thread runner;
+
+        private Training(String key, long lastLearn, long order, Runnable task) {
+            this.key = key;
+            this.lastLearn = lastLearn;
+            this.order = order;
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            if (!start()) return;
+            try {
+                task.run();
+            } finally {
+                finish();
+            }
+        }
+
+        @Synchronized
+        private boolean start() {
+            if (cancelled) return false;
+            metrics.started(queued);
+            runner = Thread.currentThread();
+            return true;
+        }
+
+        @Synchronized
+        private void finish() {
+            runner = null;
+            // clear an interrupt of cancel() so it does not reach the next training on this thread
+            Thread.interrupted();
+            trainings.remove(key, this);
+        }
+
+        @Synchronized
+        private void cancel() {
+            cancelled = true;
+            if (runner != null) runner.interrupt();
+        }
+
+        @Override
+        public int compareTo(Training other) {
+            int compare = Long.compare(lastLearn, other.lastLearn);
+            return compare != 0 ? compare : Long.compare(order, other.order);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.oanda.predictor.util;
 
+import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import com.oanda.predictor.domain.Candle;
 import com.opencsv.CSVReader;
@@ -11,8 +12,11 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.sql.Timestamp;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
 
 import static java.lang.Double.parseDouble;
@@ -22,12 +26,14 @@ import static java.nio.charset.StandardCharsets.UTF_8;
 @Slf4j
 public class CSVUtil {
 
+    private static final String TIME_FORMAT = "dd.MM.yyyy HH:mm:ss.SSSZ";
+
     @SneakyThrows
     public static void saveCandles(List<Candle> candles, String fileName) {
         if (candles.isEmpty()) return;
 
         String separator = ",";
-        SimpleDateFormat simpleDateFormat = new SimpleDateFormat("dd.MM.yyyy HH:mm:ss.SSSZ");
+        SimpleDateFormat simpleDateFormat = new SimpleDateFormat(TIME_FORMAT);
         StringBuilder stringBuilder = new StringBuilder();
         candles.forEach(candle -> {
             stringBuilder.append(simpleDateFormat.format(Date.from(candle.getTime().toInstant())));
@@ -75,4 +81,44 @@ public class CSVUtil {
 
         return data.subList(0, min(data.size(), size));
     }
+
+    /**
+     * @return time of the last candle saved by {@link #saveCandles}, -1 if there is none
+     */
+    @SneakyThrows
+    public static long getLastTime(String fileName) {
+        File csvDataFile = new File(fileName);
+        if (!csvDataFile.exists()) return -1;
+
+        long time = -1;
+        try (FileReader reader = new FileReader(csvDataFile)) {
+            Iterator<Candle> candles = readCandles(reader, null, 0);
+            while (candles.hasNext()) {
+                time = candles.next().getTime().getTime();
+            }
+        }
+        return time;
+    }
+
+    /**
+     * Lazily reads candles in the format of {@link #saveCandles}, one line per {@link Iterator#next()}.
+     */
+    public static Iterator<Candle> readCandles(Reader reader, String symbol, int step) {
+        SimpleDateFormat simpleDateFormat = new SimpleDateFormat(TIME_FORMAT);
+        return Iterators.transform(new CSVReader(reader).iterator(), line -> parseCandle(line, symbol, step, simpleDateFormat));
+    }
+
+    @SneakyThrows
+    private static Candle parseCandle(String[] line, String symbol, int step, SimpleDateFormat simpleDateFormat) {
+        Candle candle = new Candle();
+        candle.setSymbol(symbol);
+        candle.setStep(step);
+        candle.setTime(new Timestamp(simpleDateFormat.parse(line[0]).getTime()));
+        candle.setOpen(parseDouble(line[1]));
+        candle.setHigh(parseDouble(line[2]));
+        candle.setLow(parseDouble(line[3]));
+        candle.setClose(parseDouble(line[4]));
+        candle.setVolume(Double.valueOf(line[5]).intValue());
+        return candle;
+    }
 }
@@ -0,0 +1,142 @@
+package com.oanda.predictor.util;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import com.oanda.predictor.domain.Candle;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.sql.Timestamp;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+/**
+ * Compact binary candles, the wire format of "Simple EA.mq4" when BinaryWire is on.
+ * <p>
+ * Little-endian: 'C', 'D', version, symbol count, every symbol as its length and ASCII bytes,
+ * then {@link #RECORD_SIZE} bytes per candle: symbol index (uint16), step (int32), time in ms (int64),
+ * bid, ask, open, high, low, close (float64) and volume (int32).
+ */
+public class CandleCodec {
+
+    public static final String MEDIA_TYPE = "application/octet-stream";
+    public static final int RECORD_SIZE = 2 + 4 + 8 + 6 * 8 + 4;
+
+    private static final byte VERSION = 1;
+    private static final Interner<String> SYMBOLS = Interners.newWeakInterner();
+
+    /**
+     * A stream that is not in this format, the fault of its sender.
+     */
+    public static class FormatException extends IllegalArgumentException {
+
+        public FormatException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Lazily decodes the candles of the stream, one record per {@link Iterator#next()}.
+     */
+    public static Iterator<Candle> decode(InputStream stream) throws IOException {
+        DataInputStream input = new DataInputStream(stream);
+        if (input.readUnsignedByte() != 'C' || input.readUnsignedByte() != 'D' || input.readUnsignedByte() != VERSION) {
+            throw new FormatException("Not a candle stream of version " + VERSION);
+        }
+
+        String[] symbols = new String[input.readUnsignedByte()];
+        for (int i = 0; i < symbols.length; i++) {
+            byte[] symbol = new byte[input.readUnsignedByte()];
+            input.readFully(symbol);
+            symbols[i] = SYMBOLS.intern(new String(symbol, US_ASCII));
+        }
+
+        byte[] record = new byte[RECORD_SIZE];
+        ByteBuffer buffer = ByteBuffer.wrap(record).order(ByteOrder.LITTLE_ENDIAN);
+        return new Iterator<Candle>() {
+
+            private boolean read = false;
+            private boolean end = false;
+
+            @Override
+            public boolean hasNext() {
+                if (!read && !end) {
+                    try {
+                        int first = input.read();
+                        if (first < 0) {
+                            end = true;
+                        } else {
+                            record[0] = (byte) first;
+                            input.readFully(record, 1, RECORD_SIZE - 1);
+                            read = true;
+                        }
+                    } catch (EOFException ex) {
+                        throw new FormatException("Truncated candle record");
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                }
+                return read;
+            }
+
+            @Override
+            public Candle next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                read = false;
+
+                int symbol = buffer.getShort(0) & 0xFFFF;
+                int step = buffer.getInt(2);
+                long time = buffer.getLong(6);
+                if (symbol >= symbols.length) {
+                    throw new FormatException("Unknown symbol index " + symbol + " of " + symbols.length + " symbols");
+                }
+                if (step <= 0 || time <= 0) {
+                    throw new FormatException("Invalid candle step " + step + " or time " + time);
+                }
+
+                Candle candle = new Candle();
+                candle.setSymbol(symbols[symbol]);
+                candle.setStep(step);
+                candle.setTime(new Timestamp(time));
+                candle.setBid(buffer.getDouble(14));
+                candle.setAsk(buffer.getDouble(22));
+                candle.setOpen(buffer.getDouble(30));
+                candle.setHigh(buffer.getDouble(38));
+                candle.setLow(buffer.getDouble(46));
+                candle.setClose(buffer.getDouble(54));
+                candle.setVolume(buffer.getInt(62));
+                return candle;
+            }
+        };
+    }
+
+    /**
+     * Encodes candles of one symbol, as the EA does.
+     */
+    public static byte[] encode(List<Candle> candles) {
+        byte[] symbol = candles.isEmpty() ? new byte[0] : candles.get(0).getSymbol().getBytes(US_ASCII);
+        ByteBuffer buffer = ByteBuffer.allocate(5 + symbol.length + candles.size() * RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put((byte) 'C').put((byte) 'D').put(VERSION).put((byte) 1).put((byte) symbol.length).put(symbol);
+        for (Candle candle : candles) {
+            buffer.putShort((short) 0)
+                    .putInt(candle.getStep())
+                    .putLong(candle.getTime().getTime())
+                    .putDouble(candle.getBid())
+                    .putDouble(candle.getAsk())
+                    .putDouble(candle.getOpen())
+                    .putDouble(candle.getHigh())
+                    .putDouble(candle.getLow())
+                    .putDouble(candle.getClose())
+                    .putInt(candle.getVolume());
+        }
+        return buffer.array();
+    }
+}
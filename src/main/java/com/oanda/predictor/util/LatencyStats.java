@@ -0,0 +1,74 @@
+package com.oanda.predictor.util;
+
+import com.google.common.collect.Maps;
+import lombok.Synchronized;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency percentiles per key over the last {@link #WINDOW} samples.
+ */
+public class LatencyStats {
+
+    public static final int WINDOW = 1024;
+
+    private final Map<String, Samples> samples = Maps.newConcurrentMap();
+
+    public void record(String key, long nanos) {
+        samples.computeIfAbsent(key, k -> new Samples()).record(nanos);
+    }
+
+    public void timeout(String key) {
+        samples.computeIfAbsent(key, k -> new Samples()).timeout();
+    }
+
+    public Map<String, Map<String, Object>> snapshot() {
+        Map<String, Map<String, Object>> snapshot = new TreeMap<>();
+        samples.forEach((key, value) -> snapshot.put(key, value.snapshot()));
+        return snapshot;
+    }
+
+    private static class Samples {
+
+        private final long[] nanos = new long[WINDOW];
+        private long count = 0;
+        private long timeouts = 0;
+
+        @Synchronized
+        private void record(long value) {
+            nanos[(int) (count++ % WINDOW)] = value;
+        }
+
+        @Synchronized
+        private void timeout() {
+            timeouts++;
+        }
+
+        @Synchronized
+        private Map<String, Object> snapshot() {
+            long[] sorted = Arrays.copyOf(nanos, (int) Math.min(count, WINDOW));
+            Arrays.sort(sorted);
+
+            Map<String, Object> snapshot = new LinkedHashMap<>();
+            snapshot.put("count", count);
+            snapshot.put("timeouts", timeouts);
+            snapshot.put("p50Ms", percentile(sorted, 0.50));
+            snapshot.put("p99Ms", percentile(sorted, 0.99));
+            snapshot.put("maxMs", sorted.length == 0 ? 0.0 : toMillis(sorted[sorted.length - 1]));
+            return snapshot;
+        }
+
+        private static double percentile(long[] sorted, double percentile) {
+            if (sorted.length == 0) return 0.0;
+            return toMillis(sorted[(int) Math.ceil(percentile * sorted.length) - 1]);
+        }
+
+        private static double toMillis(long nanos) {
+            return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package com.oanda.predictor.util
+
+/**
+ * Streaming counterpart of [IndicatorsUtil]: keeps the state of every indicator and updates it
+ * in O(1) per candle, without windows copies or TA-Lib output arrays.
+ *
+ * Recurrences are seeded the way TA-Lib seeds them, so MACD, RSI and ADX only differ from the
+ * windowed TA-Lib values by the influence of the window start, which decays over CHUNK_SHIFT.
+ * TRIMA and the EMA column are exact: TA-Lib EMA over a window of exactly EMA_PERIOD closes
+ * returns its SMA seed, so that column is a rolling mean.
+ */
+class IndicatorEngine {
+
+    companion object {
+        const val MACD = 0
+        const val RSI = 1
+        const val ADX = 2
+        const val MA_BLACK = 3
+        const val MA_WHITE = 4
+        const val EMA = 5
+        const val SIZE = 6
+
+        // TA-Lib TA_IS_ZERO
+        private fun isZero(value: Double) = -0.00000001 < value && value < 0.00000001
+    }
+
+    private val macd = Macd(IndicatorsUtil.MACD_FAST_PERIOD, IndicatorsUtil.MACD_SLOW_PERIOD)
+    private val rsi = Rsi(IndicatorsUtil.RSI_PERIOD)
+    private val adx = Adx(IndicatorsUtil.ADX_PERIOD)
+    private val maBlack = Trima(IndicatorsUtil.MA_BLACK_PERIOD)
+    private val maWhite = Trima(IndicatorsUtil.MA_WHITE_PERIOD)
+    private val ema = RollingMean(IndicatorsUtil.EMA_PERIOD)
+
+    var count = 0
+        private set
+
+    fun update(high: Double, low: Double, close: Double) {
+        macd.update(close)
+        rsi.update(close)
+        adx.update(high, low, close)
+        maBlack.update(close)
+        maWhite.update(close)
+        ema.update(close)
+        count++
+    }
+
+    /**
+     * Current value of the indicator (0.0 until it is defined), indexed as in [StockDataSetIterator.indicators].
+     */
+    fun value(indicator: Int): Double {
+        return when (indicator) {
+            MACD -> macd.value
+            RSI -> rsi.value
+            ADX -> adx.value
+            MA_BLACK -> maBlack.value
+            MA_WHITE -> maWhite.value
+            EMA -> ema.value
+            else -> throw IndexOutOfBoundsException("Indicator: $indicator")
+        }
+    }
+
+    private class RollingMean(private val period: Int) {
+
+        private val window = DoubleArray(period)
+        private var sum = 0.0
+        private var count = 0L
+
+        var value = 0.0
+            private set
+
+        fun update(input: Double) {
+            val index = (count % period).toInt()
+            sum += input - window[index]
+            window[index] = input
+            count++
+            // recompute the sum once per period so rounding errors do not accumulate on long series
+            if (index == period - 1) sum = window.sum()
+            if (count >= period) value = sum / period
+        }
+
+        fun isReady() = count >= period
+    }
+
+    private class Trima(period: Int) {
+
+        // TA-Lib weights: SMA of SMA, (p + 1) / 2 twice when odd, p / 2 and p / 2 + 1 when even
+        private val first = RollingMean(if (period % 2 == 1) (period + 1) / 2 else period / 2)
+        private val second = RollingMean(if (period % 2 == 1) (period + 1) / 2 else period / 2 + 1)
+
+        val value: Double
+            get() = second.value
+
+        fun update(input: Double) {
+            first.update(input)
+            if (first.isReady()) second.update(first.value)
+        }
+    }
+
+    private class Ema(private val period: Int) {
+
+        private val k = 2.0 / (period + 1)
+        private var seed = 0.0
+        private var count = 0
+
+        var value = 0.0
+            private set
+
+        fun update(input: Double) {
+            count++
+            when {
+                count < period -> seed += input
+                count == period -> value = (seed + input) / period
+                else -> value += (input - value) * k
+            }
+        }
+
+        fun isReady() = count >= period
+    }
+
+    private class Macd(private val fastPeriod: Int, private val slowPeriod: Int) {
+
+        private val fast = Ema(fastPeriod)
+        private val slow = Ema(slowPeriod)
+        private var count = 0
+
+        var value = 0.0
+            private set
+
+        fun update(input: Double) {
+            // as TA-Lib, the fast EMA is seeded on the closes that end the slow EMA seed
+            if (count >= slowPeriod - fastPeriod) fast.update(input)
+            slow.update(input)
+            count++
+            if (slow.isReady()) value = fast.value - slow.value
+        }
+    }
+
+    private class Rsi(private val period: Int) {
+
+        private var previous = 0.0
+        private var gain = 0.0
+        private var loss = 0.0
+        private var count = 0
+
+        var value = 0.0
+            private set
+
+        fun update(input: Double) {
+            if (count++ == 0) {
+                previous = input
+                return
+            }
+
+            val diff = input - previous
+            previous = input
+            val diffs = count - 1
+            if (diffs <= period) {
+                if (diff < 0) loss -= diff else gain += diff
+                if (diffs == period) {
+                    gain /= period
+                    loss /= period
+                    value = rsi()
+                }
+                return
+            }
+
+            gain *= period - 1
+            loss *= period - 1
+            if (diff < 0) loss -= diff else gain += diff
+            gain /= period
+            loss /= period
+            value = rsi()
+        }
+
+        private fun rsi(): Double {
+            val sum = gain + loss
+            return if (!isZero(sum)) 100.0 * (gain / sum) else 0.0
+        }
+    }
+
+    private class Adx(private val period: Int) {
+
+        private var previousHigh = 0.0
+        private var previousLow = 0.0
+        private var previousClose = 0.0
+        private var plusDM = 0.0
+        private var minusDM = 0.0
+        private var trueRange = 0.0
+        private var sumDX = 0.0
+        private var count = 0
+
+        var value = 0.0
+            private set
+
+        fun update(high: Double, low: Double, close: Double) {
+            if (count++ == 0) {
+                previousHigh = high
+                previousLow = low
+                previousClose = close
+                return
+            }
+
+            val diffP = high - previousHigh
+            val diffM = previousLow - low
+            previousHigh = high
+            previousLow = low
+
+            var range = high - low
+            if (Math.abs(high - previousClose) > range) range = Math.abs(high - previousClose)
+            if (Math.abs(low - previousClose) > range) range = Math.abs(low - previousClose)
+            previousClose = close
+
+            val bar = count - 1
+            if (bar < period) {
+                if (diffM > 0 && diffP < diffM) minusDM += diffM else if (diffP > 0 && diffP > diffM) plusDM += diffP
+                trueRange += range
+                return
+            }
+
+            minusDM -= minusDM / period
+            plusDM -= plusDM / period
+            if (diffM > 0 && diffP < diffM) minusDM += diffM else if (diffP > 0 && diffP > diffM) plusDM += diffP
+            trueRange = trueRange - trueRange / period + range
+
+            var dx = Double.NaN
+            if (!isZero(trueRange)) {
+                val minusDI = 100.0 * (minusDM / trueRange)
+                val plusDI = 100.0 * (plusDM / trueRange)
+                val sumDI = minusDI + plusDI
+                if (!isZero(sumDI)) dx = 100.0 * (Math.abs(minusDI - plusDI) / sumDI)
+            }
+
+            if (bar < 2 * period) {
+                if (!dx.isNaN()) sumDX += dx
+                if (bar == 2 * period - 1) value = sumDX / period
+            } else if (!dx.isNaN()) {
+                value = (value * (period - 1) + dx) / period
+            }
+        }
+    }
+}
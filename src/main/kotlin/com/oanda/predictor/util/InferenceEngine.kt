@@ -0,0 +1,56 @@
+package com.oanda.predictor.util
+
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork
+import org.nd4j.linalg.api.ndarray.INDArray
+import org.nd4j.linalg.indexing.NDArrayIndex
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Stateless predictions of a trained network: every call feeds a whole input sequence to output(), no recurrent
+ * state is kept between calls. A call runs on an idle worker, made when all are busy, so threads can predict
+ * in parallel. Workers share the parameter buffer of the network, only their activations are their own;
+ * the network must not be trained any further once it predicts.
+ */
+class InferenceEngine(private val network: MultiLayerNetwork) {
+
+    // the network itself is the first worker, output() leaves its parameters as they are
+    private val idle = ConcurrentLinkedQueue<MultiLayerNetwork>(listOf(network))
+    private val created = AtomicInteger(1)
+
+    /**
+     * Count of workers, as many as calls ran at the same time.
+     */
+    val workers: Int
+        get() = created.get()
+
+    /**
+     * @param sequence input of shape [1, columns, time steps], see [StockDataSetIterator.lastSequence]
+     * @return the output of the last time step
+     */
+    fun predict(sequence: INDArray): INDArray {
+        val worker = idle.poll() ?: newWorker()
+        try {
+            val output = worker.output(sequence, false)
+            return output.get(NDArrayIndex.point(0), NDArrayIndex.all(), NDArrayIndex.point(output.size(2) - 1))
+        } finally {
+            idle.offer(worker)
+        }
+    }
+
+    /**
+     * Drops the workers, once no call is running anymore.
+     */
+    fun release() {
+        idle.clear()
+        created.set(0)
+    }
+
+    private fun newWorker(): MultiLayerNetwork {
+        created.incrementAndGet()
+        val worker = MultiLayerNetwork(network.layerWiseConfigurations.clone())
+        // the parameters are a view of the network's buffer, no weights are copied
+        worker.init(network.params(), false)
+        return worker
+    }
+}
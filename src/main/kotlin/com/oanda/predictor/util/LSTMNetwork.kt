@@ -1,35 +1,66 @@
 package com.oanda.predictor.util
 
+import org.deeplearning4j.datasets.iterator.AsyncDataSetIterator
 import org.deeplearning4j.nn.api.OptimizationAlgorithm
 import org.deeplearning4j.nn.conf.BackpropType
 import org.deeplearning4j.nn.conf.NeuralNetConfiguration
 import org.deeplearning4j.nn.conf.Updater
 import org.deeplearning4j.nn.conf.layers.DenseLayer
 import org.deeplearning4j.nn.conf.layers.GravesLSTM
+import org.deeplearning4j.nn.conf.layers.LSTM
 import org.deeplearning4j.nn.conf.layers.RnnOutputLayer
 import org.deeplearning4j.nn.multilayer.MultiLayerNetwork
 import org.deeplearning4j.nn.weights.WeightInit
 import org.deeplearning4j.optimize.listeners.ScoreIterationListener
 import org.nd4j.linalg.activations.Activation
+import org.nd4j.linalg.api.ndarray.INDArray
 import org.nd4j.linalg.dataset.api.iterator.DataSetIterator
 import org.nd4j.linalg.lossfunctions.LossFunctions
+import org.slf4j.LoggerFactory
+import java.util.concurrent.CancellationException
 
 object LSTMNetwork {
 
+    private val log = LoggerFactory.getLogger(LSTMNetwork::class.java)
+
     private val learningRate = 0.05
     private val iterations = 1
     private val seed = 777
     private val score = 100
-
-    private val lstmLayer1Size = 256
-    private val lstmLayer2Size = 256
-    private val denseLayerSize = 32
     private val dropoutRatio = 0.2
-    private val truncatedBPTTLength = 22
+
+    // count of mini-batches prepared ahead of net.fit
+    private val prefetchSize = 4
 
     @JvmStatic
     fun buildLstmNetworks(iterator: DataSetIterator): MultiLayerNetwork {
-        val conf = NeuralNetConfiguration.Builder()
+        val net = createNetwork(iterator)
+        fit(net, iterator, score)
+        return net
+    }
+
+    /**
+     * Architecture of a network: the cell of its recurrent layers, their sizes, the dense layer size and the tBPTT length.
+     */
+    data class Profile(val cell: Cell, val layers: List<Int>, val denseLayerSize: Int, val truncatedBPTTLength: Int) {
+
+        companion object {
+            @JvmField
+            val DEFAULT = Profile(Cell.GRAVES, listOf(256, 256), 32, 22)
+        }
+
+        override fun toString() = "$cell ${layers.joinToString(",")} / $denseLayerSize, tBPTT $truncatedBPTTLength"
+    }
+
+    /**
+     * GRAVES has peephole connections, LSTM is the lighter cell without them.
+     */
+    enum class Cell { GRAVES, LSTM }
+
+    @JvmStatic
+    @JvmOverloads
+    fun createNetwork(iterator: DataSetIterator, profile: Profile = Profile.DEFAULT): MultiLayerNetwork {
+        var builder = NeuralNetConfiguration.Builder()
                 .seed(seed)
                 .iterations(iterations)
                 .learningRate(learningRate)
@@ -39,34 +70,44 @@ object LSTMNetwork {
                 .regularization(true)
                 .l2(1e-4)
                 .list()
-                .layer(0, GravesLSTM.Builder()
-                        .nIn(iterator.inputColumns())
-                        .nOut(lstmLayer1Size)
+
+        var nIn = iterator.inputColumns()
+        for ((index, size) in profile.layers.withIndex()) {
+            val layer = when (profile.cell) {
+                Cell.GRAVES -> GravesLSTM.Builder()
+                        .nIn(nIn)
+                        .nOut(size)
                         .activation(Activation.TANH)
                         .gateActivationFunction(Activation.HARDSIGMOID)
                         .dropOut(dropoutRatio)
-                        .build())
-                .layer(1, GravesLSTM.Builder()
-                        .nIn(lstmLayer1Size)
-                        .nOut(lstmLayer2Size)
+                        .build()
+                Cell.LSTM -> LSTM.Builder()
+                        .nIn(nIn)
+                        .nOut(size)
                         .activation(Activation.TANH)
                         .gateActivationFunction(Activation.HARDSIGMOID)
                         .dropOut(dropoutRatio)
-                        .build())
-                .layer(2, DenseLayer.Builder()
-                        .nIn(lstmLayer2Size)
-                        .nOut(denseLayerSize)
+                        .build()
+            }
+            builder = builder.layer(index, layer)
+            nIn = size
+        }
+
+        val conf = builder
+                .layer(profile.layers.size, DenseLayer.Builder()
+                        .nIn(nIn)
+                        .nOut(profile.denseLayerSize)
                         .activation(Activation.RELU)
                         .build())
-                .layer(3, RnnOutputLayer.Builder()
-                        .nIn(denseLayerSize)
+                .layer(profile.layers.size + 1, RnnOutputLayer.Builder()
+                        .nIn(profile.denseLayerSize)
                         .nOut(iterator.totalOutcomes())
                         .activation(Activation.IDENTITY)
                         .lossFunction(LossFunctions.LossFunction.MSE)
                         .build())
                 .backpropType(BackpropType.TruncatedBPTT)
-                .tBPTTForwardLength(truncatedBPTTLength)
-                .tBPTTBackwardLength(truncatedBPTTLength)
+                .tBPTTForwardLength(profile.truncatedBPTTLength)
+                .tBPTTBackwardLength(profile.truncatedBPTTLength)
                 .pretrain(false)
                 .backprop(true)
                 .build()
@@ -74,13 +115,94 @@ object LSTMNetwork {
         val net = MultiLayerNetwork(conf)
         net.init()
         net.setListeners(ScoreIterationListener(score))
+        return net
+    }
 
-        for (i in 0 until score) {
-            while (iterator.hasNext()) net.fit(iterator.next()) // fit model using mini-batch data
-            iterator.reset() // reset iterator
-            net.rnnClearPreviousState() // clear previous state
+    /**
+     * Fits the network for the count of epochs. When the iterator supports it, the next mini-batches
+     * are built on a background thread while the current one is fitted.
+     * An interrupt of the thread stops the training after the current epoch with [CancellationException].
+     */
+    @JvmStatic
+    @JvmOverloads
+    fun fit(net: MultiLayerNetwork, iterator: DataSetIterator, epochs: Int, async: Boolean = iterator.asyncSupported()) {
+        val trainIterator = if (async) AsyncDataSetIterator(iterator, prefetchSize, false) else iterator
+        try {
+            for (i in 0 until epochs) {
+                if (Thread.currentThread().isInterrupted) throw CancellationException("Training interrupted at epoch $i")
+                while (trainIterator.hasNext()) net.fit(trainIterator.next()) // fit model using mini-batch data
+                trainIterator.reset() // reset iterator
+                net.rnnClearPreviousState() // clear previous state
+            }
+        } finally {
+            if (trainIterator is AsyncDataSetIterator) trainIterator.shutdown()
         }
+    }
 
-        return net
+    /**
+     * Epochs of a training with early stopping, [bestEpoch] is the one whose parameters the network keeps.
+     * [bestScore] is null when the validation had no examples and the network was fitted for all epochs.
+     */
+    data class FitResult(val epochs: Int, val bestEpoch: Int, val bestScore: Double?, val maxEpochs: Int) {
+        val epochsSaved: Int
+            get() = maxEpochs - epochs
+    }
+
+    /**
+     * Fits the network up to [maxEpochs] and stops when the score on [validation] has not improved by more than
+     * [minDelta] for [patience] epochs. The network ends with the parameters of its best epoch.
+     * Without validation examples it is fitted for [maxEpochs]; an epoch with a NaN score never counts as
+     * the best, and a training with no finite score at all fails with [IllegalStateException].
+     */
+    @JvmStatic
+    fun fit(net: MultiLayerNetwork, iterator: DataSetIterator, validation: DataSetIterator, maxEpochs: Int, patience: Int, minDelta: Double): FitResult {
+        validation.reset()
+        if (!validation.hasNext()) {
+            log.warn("No validation examples, fitting all {} epochs", maxEpochs)
+            fit(net, iterator, maxEpochs)
+            return FitResult(maxEpochs, maxEpochs, null, maxEpochs)
+        }
+
+        var bestScore = Double.MAX_VALUE
+        var bestEpoch = 0
+        var bestParams: INDArray? = null
+        var epoch = 0
+        while (epoch < maxEpochs) {
+            fit(net, iterator, 1)
+            epoch++
+            val score = score(net, validation)
+            log.debug("Epoch {}: validation score {}", epoch, score)
+            if (score.isNaN()) {
+                log.warn("Epoch {}: the validation score is NaN", epoch)
+            }
+            if (score < bestScore - minDelta) {
+                bestScore = score
+                bestEpoch = epoch
+                bestParams = net.params().dup()
+            } else if (epoch - bestEpoch >= patience) {
+                break
+            }
+        }
+        if (bestParams == null) throw IllegalStateException("No finite validation score in $epoch epochs")
+        if (bestEpoch < epoch) net.setParams(bestParams)
+        return FitResult(epoch, bestEpoch, bestScore, maxEpochs)
+    }
+
+    /**
+     * Mean loss of the network over the examples of the iterator, NaN if it has none.
+     */
+    @JvmStatic
+    fun score(net: MultiLayerNetwork, iterator: DataSetIterator): Double {
+        var sum = 0.0
+        var examples = 0
+        iterator.reset()
+        while (iterator.hasNext()) {
+            val dataSet = iterator.next()
+            sum += net.score(dataSet) * dataSet.numExamples()
+            examples += dataSet.numExamples()
+            net.rnnClearPreviousState()
+        }
+        iterator.reset()
+        return if (examples == 0) Double.NaN else sum / examples
     }
 }
@@ -0,0 +1,227 @@
+package com.oanda.predictor.util
+
+import com.oanda.predictor.domain.Candle
+import org.nd4j.linalg.api.buffer.DataBuffer
+import org.nd4j.linalg.api.ndarray.INDArray
+import org.nd4j.linalg.dataset.DataSet
+import org.nd4j.linalg.dataset.api.DataSetPreProcessor
+import org.nd4j.linalg.dataset.api.iterator.DataSetIterator
+import org.nd4j.linalg.factory.Nd4j
+import org.slf4j.LoggerFactory
+import java.io.IOException
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.nio.MappedByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.StandardCopyOption
+import java.nio.file.StandardOpenOption
+import java.util.*
+
+/**
+ * Mini-batches of a training window, materialized once into a binary file and read back through a memory map:
+ * the DataSet arrays are backed by the mapped pages, nothing is copied on the heap.
+ *
+ * File layout, little-endian: header (magic, version, window key, columns, outcomes, length, batches),
+ * then for every batch its size followed by the input and label floats in 'f' order.
+ */
+class MappedDataSetIterator private constructor(private val buffer: MappedByteBuffer) : DataSetIterator {
+
+    private val columns: Int
+    private val outcomes: Int
+    private val length: Int
+    private val offsets: IntArray
+    private val sizes: IntArray
+    private val examples: Int
+    private var cursor = 0
+    private var dataSetPreProcessor: DataSetPreProcessor? = null
+
+    companion object {
+        private val log = LoggerFactory.getLogger(MappedDataSetIterator::class.java)
+
+        private const val MAGIC = 0x544E5352 // TNSR
+        // bump when the features of StockDataSetIterator change
+        private const val VERSION = 1
+        private const val HEADER_SIZE = 4 + 4 + 8 + 4 + 4 + 4 + 4
+
+        /**
+         * Maps the tensors of [file] if they were written for the same window [key], or writes them from one
+         * epoch of [source] first.
+         */
+        @JvmStatic
+        @Throws(IOException::class)
+        fun create(file: Path, key: Long, source: DataSetIterator): MappedDataSetIterator {
+            if (Files.exists(file) && Files.size(file) >= HEADER_SIZE) {
+                val mapped = map(file)
+                if (mapped.getInt(0) == MAGIC && mapped.getInt(4) == VERSION && mapped.getLong(8) == key) {
+                    log.info("The training tensors are mapped from the disk: {}", file)
+                    return MappedDataSetIterator(mapped)
+                }
+            }
+
+            write(file, key, source)
+            log.info("The training tensors are saved to disk: {}", file)
+            return MappedDataSetIterator(map(file))
+        }
+
+        /**
+         * Identity of a training window: count, times, highs, lows and closes of its candles, all the features
+         * are computed from.
+         */
+        @JvmStatic
+        fun windowKey(candles: List<Candle>): Long {
+            var key = candles.size.toLong()
+            for (candle in candles) {
+                key = 31 * key + (candle.time?.time ?: 0L)
+                key = 31 * key + java.lang.Double.doubleToLongBits(candle.high)
+                key = 31 * key + java.lang.Double.doubleToLongBits(candle.low)
+                key = 31 * key + java.lang.Double.doubleToLongBits(candle.close)
+            }
+            return key
+        }
+
+        private fun write(file: Path, key: Long, source: DataSetIterator) {
+            val temp = file.resolveSibling(file.fileName.toString() + ".tmp")
+            FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING).use { channel ->
+                val header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN)
+                header.putInt(MAGIC).putInt(VERSION).putLong(key)
+                        .putInt(source.inputColumns()).putInt(source.totalOutcomes()).putInt(StockDataSetIterator.LENGTH)
+                header.flip()
+                channel.write(header, 0)
+
+                var batches = 0
+                channel.position(HEADER_SIZE.toLong())
+                source.reset()
+                while (source.hasNext()) {
+                    val dataSet = source.next()
+                    val features = dataSet.features.dup('f').data().asFloat()
+                    val labels = dataSet.labels.dup('f').data().asFloat()
+                    val batch = ByteBuffer.allocate(4 + (features.size + labels.size) * 4).order(ByteOrder.LITTLE_ENDIAN)
+                    batch.putInt(dataSet.numExamples())
+                    batch.asFloatBuffer().put(features).put(labels)
+                    batch.rewind()
+                    channel.write(batch)
+                    batches++
+                }
+                source.reset()
+
+                header.clear()
+                header.putInt(batches).flip()
+                channel.write(header, HEADER_SIZE - 4L)
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE)
+        }
+
+        private fun map(file: Path): MappedByteBuffer {
+            FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE).use { channel ->
+                // the batches must stay read-only: the network only reads its input (dropout works on a copy),
+                // a page written through this mapping would keep its change for every later epoch
+                val buffer = channel.map(FileChannel.MapMode.PRIVATE, 0, channel.size())
+                buffer.order(ByteOrder.LITTLE_ENDIAN)
+                return buffer
+            }
+        }
+    }
+
+    init {
+        columns = buffer.getInt(16)
+        outcomes = buffer.getInt(20)
+        length = buffer.getInt(24)
+        val batches = buffer.getInt(28)
+        offsets = IntArray(batches)
+        sizes = IntArray(batches)
+        var offset = HEADER_SIZE
+        var total = 0
+        for (i in 0 until batches) {
+            sizes[i] = buffer.getInt(offset)
+            offsets[i] = offset + 4
+            offset += 4 + sizes[i] * (columns + outcomes) * length * 4
+            total += sizes[i]
+        }
+        examples = total
+    }
+
+    override fun next(num: Int): DataSet {
+        if (!hasNext()) throw NoSuchElementException()
+
+        val size = sizes[cursor]
+        val features = array(offsets[cursor], intArrayOf(size, columns, length))
+        val labels = array(offsets[cursor] + size * columns * length * 4, intArrayOf(size, outcomes, length))
+        cursor++
+
+        val dataSet = DataSet(features, labels)
+        dataSetPreProcessor?.preProcess(dataSet)
+        return dataSet
+    }
+
+    private fun array(offset: Int, shape: IntArray): INDArray {
+        val length = shape[0] * shape[1] * shape[2]
+        val slice = buffer.duplicate()
+        slice.position(offset)
+        slice.limit(offset + length * 4)
+        val data = Nd4j.createBuffer(slice.slice().order(ByteOrder.LITTLE_ENDIAN), DataBuffer.Type.FLOAT, length)
+        return Nd4j.create(data, shape, intArrayOf(1, shape[0], shape[0] * shape[1]), 0, 'f')
+    }
+
+    override fun remove() {
+        // nothing
+    }
+
+    override fun totalExamples(): Int {
+        return examples
+    }
+
+    override fun inputColumns(): Int {
+        return columns
+    }
+
+    override fun totalOutcomes(): Int {
+        return outcomes
+    }
+
+    override fun resetSupported(): Boolean {
+        return true
+    }
+
+    // mapped batches are ready, there is nothing to prefetch
+    override fun asyncSupported(): Boolean {
+        return false
+    }
+
+    override fun reset() {
+        cursor = 0
+    }
+
+    override fun batch(): Int {
+        return if (sizes.isEmpty()) 0 else sizes[0]
+    }
+
+    override fun cursor(): Int {
+        return cursor
+    }
+
+    override fun numExamples(): Int {
+        return totalExamples()
+    }
+
+    override fun setPreProcessor(dataSetPreProcessor: DataSetPreProcessor) {
+        this.dataSetPreProcessor = dataSetPreProcessor
+    }
+
+    override fun getPreProcessor(): DataSetPreProcessor? {
+        return dataSetPreProcessor
+    }
+
+    override fun getLabels(): List<String>? {
+        return null
+    }
+
+    override fun hasNext(): Boolean {
+        return cursor < offsets.size
+    }
+
+    override fun next(): DataSet {
+        return next(batch())
+    }
+}
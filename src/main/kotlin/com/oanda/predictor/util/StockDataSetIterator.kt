@@ -14,11 +14,19 @@ class StockDataSetIterator(stockDataList: List<Candle>, splitRatio: Double = 1.0
 
     private val log = LoggerFactory.getLogger(StockDataSetIterator::class.java)
 
-    private val exampleStartOffsets = LinkedList<Int>()
+    // examples start at the offsets firstExample until exampleLimit, in order, out of exampleCount
+    private var firstExample = 0
+    private var exampleLimit = 0
+    private var exampleCount = 0
+    private var exampleCursor = 0
+    // reused by next(), wrapped into the DataSet arrays once per mini-batch
+    private var inputBuffer = FloatArray(0)
+    private var labelBuffer = FloatArray(0)
     private var dataSetPreProcessor: DataSetPreProcessor? = null
 
     private val train: List<Candle>
-    val test: List<Pair<INDArray, Double>>
+    private val trainCloses: DoubleArray
+    private val testCandles: List<Candle>
 
     var indicators: Array<DoubleArray>? = null
     val maxs: DoubleArray = doubleArrayOf(Double.MIN_VALUE, Double.MIN_VALUE, Double.MIN_VALUE, Double.MIN_VALUE, Double.MIN_VALUE, Double.MIN_VALUE)
@@ -36,6 +44,17 @@ class StockDataSetIterator(stockDataList: List<Candle>, splitRatio: Double = 1.0
         val LENGTH = 22
         val MINI_BATCH_SIZE = 32
 
+        // count of candles an indicator needs before its first value, indexed as indicators
+        @JvmField
+        val INDICATOR_WINDOWS = intArrayOf(
+                IndicatorsUtil.MACD_SLOW_PERIOD + CHUNK_SHIFT,
+                IndicatorsUtil.RSI_PERIOD + CHUNK_SHIFT,
+                IndicatorsUtil.ADX_PERIOD + CHUNK_SHIFT,
+                IndicatorsUtil.MA_BLACK_PERIOD,
+                IndicatorsUtil.MA_WHITE_PERIOD,
+                IndicatorsUtil.EMA_PERIOD
+        )
+
         @JvmStatic
         fun normalize(input: Double, min: Double, max: Double): Double {
             return (input - min) / (max - min) * 0.8 + 0.0001
@@ -50,6 +69,91 @@ class StockDataSetIterator(stockDataList: List<Candle>, splitRatio: Double = 1.0
         fun getVectorSize(): Int {
             return (CHUNK_SHIFT + VECTOR_SIZE_1 + VECTOR_SIZE_2) * 2
         }
+
+        /**
+         * Ranges of a window of cached indicators and closes, as the iterator calculates them on the same candles:
+         * the range of an indicator only covers the candles after its window.
+         */
+        @JvmStatic
+        fun windowRanges(indicators: Array<DoubleArray>, closes: DoubleArray, mins: DoubleArray, maxs: DoubleArray, closeRange: DoubleArray) {
+            for (n in indicators.indices) {
+                mins[n] = Double.MAX_VALUE
+                maxs[n] = Double.MIN_VALUE
+                for (i in INDICATOR_WINDOWS[n] until indicators[n].size) {
+                    val value = indicators[n][i]
+                    if (value < mins[n]) mins[n] = value
+                    if (value > maxs[n]) maxs[n] = value
+                }
+            }
+
+            closeRange[0] = Double.MAX_VALUE
+            closeRange[1] = Double.MIN_VALUE
+            for (close in closes) {
+                if (close < closeRange[0]) closeRange[0] = close
+                if (close > closeRange[1]) closeRange[1] = close
+            }
+        }
+
+        @JvmStatic
+        fun createInput(): INDArray {
+            return Nd4j.create(intArrayOf(1, VECTOR_SIZE_1 + VECTOR_SIZE_2 + 1), 'f')
+        }
+
+        /**
+         * Input of the last [test] example of a window, built from cached indicators and closes of the window.
+         * As in the test data set, indicators past the window are clamped to the last value.
+         * The vector is written into [input], so one array made by [createInput] can be reused between calls.
+         */
+        @JvmStatic
+        @JvmOverloads
+        fun lastInput(indicators: Array<DoubleArray>, closes: DoubleArray, mins: DoubleArray, maxs: DoubleArray, closeRange: DoubleArray,
+                      input: INDArray = createInput()): INDArray {
+            writeInput(indicators, closes, mins, maxs, closeRange, 0) { k, value -> input.putScalar(k, value) }
+            return input
+        }
+
+        @JvmStatic
+        fun createSequence(): INDArray {
+            return Nd4j.create(intArrayOf(1, VECTOR_SIZE_1 + VECTOR_SIZE_2 + 1, LENGTH), 'f')
+        }
+
+        /**
+         * Inputs of the last [LENGTH] candles of a window as one sequence, each step the [lastInput] of the window
+         * ending at its candle, so a prediction sees the context of a training sequence without keeping state.
+         * The last step equals [lastInput]. The window must reach [LENGTH] - 1 candles further back than for [lastInput].
+         */
+        @JvmStatic
+        @JvmOverloads
+        fun lastSequence(indicators: Array<DoubleArray>, closes: DoubleArray, mins: DoubleArray, maxs: DoubleArray, closeRange: DoubleArray,
+                         sequence: INDArray = createSequence()): INDArray {
+            for (time in 0 until LENGTH) {
+                writeInput(indicators, closes, mins, maxs, closeRange, LENGTH - 1 - time) { k, value -> sequence.putScalar(intArrayOf(0, k, time), value) }
+            }
+            return sequence
+        }
+
+        // input of the window without its last [shift] candles
+        private inline fun writeInput(indicators: Array<DoubleArray>, closes: DoubleArray, mins: DoubleArray, maxs: DoubleArray, closeRange: DoubleArray,
+                                      shift: Int, put: (Int, Double) -> Unit) {
+            var k = 0
+            while (k < VECTOR_SIZE_1) {
+                var n = 0
+                while (n <= VECTOR_K) {
+                    put(k, normalize(indicators[n][indicators[n].size - 1 - shift], mins[n], maxs[n]))
+                    k++
+                    n++
+                }
+            }
+            // the last example ends one candle before the last one
+            val i = closes.size - 2 - shift
+            k = VECTOR_SIZE_1
+            var j = VECTOR_SIZE_2
+            while (k < VECTOR_SIZE_1 + VECTOR_SIZE_2) {
+                put(k, normalize(closes[i - j], closeRange[0], closeRange[1]))
+                k++
+                j--
+            }
+        }
     }
 
     init {
@@ -74,135 +178,85 @@ class StockDataSetIterator(stockDataList: List<Candle>, splitRatio: Double = 1.0
 
         indicators = indicatorsSlice
         train = if (startIndexTrainData < split) stockDataList.subList(startIndexTrainData, split) else stockDataList.subList(0, 0)
-        test = generateTestDataSet(stockDataList.subList(split, stockDataList.size))
+        trainCloses = DoubleArray(train.size) { train[it].close }
+        testCandles = stockDataList.subList(split, stockDataList.size)
+        exampleCount = Math.max(0, train.size - (LENGTH + 1))
+        exampleLimit = exampleCount
 
         initializeOffsets()
     }
 
-    private fun initializeIndicators(stockDataList: List<Candle>) {
-        val candles = ArrayList(stockDataList)
+    val test: List<Pair<INDArray, Double>> by lazy { generateTestDataSet(testCandles) }
 
-        // MACD
-        val chunkMacdSize = IndicatorsUtil.MACD_SLOW_PERIOD + CHUNK_SHIFT
-        var chunkMacdCounter = chunkMacdSize
-        for (i in chunkMacdSize until candles.size) {
-            val inClose = DoubleArray(chunkMacdSize)
-            var k = 0
-            var j = i - chunkMacdSize
-            while (k < chunkMacdSize) {
-                inClose[k] = candles[j].close
-                k++
-                j++
-            }
-            val value = IndicatorsUtil.macd(inClose)
-            indicators!![0][chunkMacdCounter++] = value
-            if (value < mins[0]) mins[0] = value
-            if (value > maxs[0]) maxs[0] = value
-        }
-
-        // RSI
-        val chunkRsiSize = IndicatorsUtil.RSI_PERIOD + CHUNK_SHIFT
-        var chunkRsiCounter = chunkRsiSize
-        for (i in chunkRsiSize until candles.size) {
-            val inClose = DoubleArray(chunkRsiSize)
-            var k = 0
-            var j = i - chunkRsiSize
-            while (k < chunkRsiSize) {
-                inClose[k] = candles[j].close
-                k++
-                j++
+    private fun initializeIndicators(stockDataList: List<Candle>) {
+        val engine = IndicatorEngine()
+        for (i in stockDataList.indices) {
+            // indicators at i are calculated on the candles before i
+            for (n in 0 until IndicatorEngine.SIZE) {
+                if (i < INDICATOR_WINDOWS[n]) continue
+                val value = engine.value(n)
+                indicators!![n][i] = value
+                if (value < mins[n]) mins[n] = value
+                if (value > maxs[n]) maxs[n] = value
             }
-            val value = IndicatorsUtil.rsi(inClose)
-            indicators!![1][chunkRsiCounter++] = value
-            if (value < mins[1]) mins[1] = value
-            if (value > maxs[1]) maxs[1] = value
+            val candle = stockDataList[i]
+            engine.update(candle.high, candle.low, candle.close)
         }
 
-        // ADX
-        val chunkAdxSize = IndicatorsUtil.ADX_PERIOD + CHUNK_SHIFT
-        var chunkAdxCounter = chunkAdxSize
-        for (i in chunkAdxSize until candles.size) {
-            val inClose = DoubleArray(chunkAdxSize)
-            val inHigh = DoubleArray(chunkAdxSize)
-            val inLow = DoubleArray(chunkAdxSize)
-            var k = 0
-            var j = i - chunkAdxSize
-            while (k < chunkAdxSize) {
-                inClose[k] = candles[j].close
-                inHigh[k] = candles[j].high
-                inLow[k] = candles[j].low
-                k++
-                j++
-            }
-            val value = IndicatorsUtil.adx(inClose, inLow, inHigh)
-            indicators!![2][chunkAdxCounter++] = value
-            if (value < mins[2]) mins[2] = value
-            if (value > maxs[2]) maxs[2] = value
+        for (candle in stockDataList) {
+            if (candle.close < closes[0]) closes[0] = candle.close
+            if (candle.close > closes[1]) closes[1] = candle.close
         }
+    }
 
-        // MA Black
-        var chunkMABCounter = IndicatorsUtil.MA_BLACK_PERIOD
-        for (i in IndicatorsUtil.MA_BLACK_PERIOD until candles.size) {
-            val inClose = DoubleArray(IndicatorsUtil.MA_BLACK_PERIOD)
-            var k = 0
-            var j = i - IndicatorsUtil.MA_BLACK_PERIOD
-            while (k < IndicatorsUtil.MA_BLACK_PERIOD) {
-                inClose[k] = candles[j].close
-                k++
-                j++
-            }
-            val value = IndicatorsUtil.movingAverageBlack(inClose)
-            indicators!![3][chunkMABCounter++] = value
-            if (value < mins[3]) mins[3] = value
-            if (value > maxs[3]) maxs[3] = value
-        }
+    private fun initializeOffsets() {
+        exampleCursor = firstExample
+    }
 
-        // MA White
-        var chunkMAWCounter = IndicatorsUtil.MA_WHITE_PERIOD
-        for (i in IndicatorsUtil.MA_WHITE_PERIOD until candles.size) {
-            val inClose = DoubleArray(IndicatorsUtil.MA_WHITE_PERIOD)
-            var k = 0
-            var j = i - IndicatorsUtil.MA_WHITE_PERIOD
-            while (k < IndicatorsUtil.MA_WHITE_PERIOD) {
-                inClose[k] = candles[j].close
-                k++
-                j++
-            }
-            val value = IndicatorsUtil.movingAverageWhite(inClose)
-            indicators!![4][chunkMAWCounter++] = value
-            if (value < mins[4]) mins[4] = value
-            if (value > maxs[4]) maxs[4] = value
-        }
+    /**
+     * Restricts the epochs to the examples whose time steps or labels reach the last [candles] candles,
+     * so fine-tuning on new candles costs in proportion to them. Indicators and ranges still cover the whole window.
+     */
+    @Synchronized
+    fun useLastCandles(candles: Int) {
+        firstExample = Math.min(exampleLimit, Math.max(0, firstReaching(candles)))
+        initializeOffsets()
+    }
 
-        // EMA
-        var chunkEmaCounter = IndicatorsUtil.EMA_PERIOD
-        for (i in IndicatorsUtil.EMA_PERIOD until candles.size) {
-            val inClose = DoubleArray(IndicatorsUtil.EMA_PERIOD)
-            var k = 0
-            var j = i - IndicatorsUtil.EMA_PERIOD
-            while (k < IndicatorsUtil.EMA_PERIOD) {
-                inClose[k] = candles[j].close
-                k++
-                j++
-            }
-            val value = IndicatorsUtil.ema(inClose)
-            indicators!![5][chunkEmaCounter++] = value
-            if (value < mins[5]) mins[5] = value
-            if (value > maxs[5]) maxs[5] = value
-        }
+    /**
+     * Leaves out the examples whose time steps or labels reach the last [candles] candles, the ones
+     * [useLastCandles] keeps, so they can validate the training.
+     */
+    @Synchronized
+    fun holdOutLastCandles(candles: Int) {
+        exampleLimit = Math.max(firstExample, Math.min(exampleCount, firstReaching(candles)))
+        initializeOffsets()
+    }
 
-        for (candle in candles) {
-            if (candle.close < closes[0]) closes[0] = candle.close
-            if (candle.close > closes[1]) closes[1] = candle.close
+    /**
+     * Scales the examples with the ranges of an earlier training instead of the ones of this window, so a fine-tune
+     * keeps the scale its network was trained with. Without [mins] and [maxs] the indicators keep the window ranges.
+     */
+    @Synchronized
+    fun useRanges(mins: DoubleArray?, maxs: DoubleArray?, closeMin: Double, closeMax: Double) {
+        if (mins != null && maxs != null) {
+            System.arraycopy(mins, 0, this.mins, 0, this.mins.size)
+            System.arraycopy(maxs, 0, this.maxs, 0, this.maxs.size)
         }
+        closes[0] = closeMin
+        closes[1] = closeMax
     }
 
-    private fun initializeOffsets() {
-        exampleStartOffsets.clear()
-        val window = LENGTH + 1
-        for (i in 0 until train.size - window) {
-            exampleStartOffsets.add(i)
-        }
+    // an example at offset e spans the candles e + VECTOR_SIZE_2 until e + VECTOR_SIZE_2 + LENGTH, labels reach 3 more
+    private fun firstReaching(candles: Int) = train.size - candles - VECTOR_SIZE_2 - LENGTH - 2
+
+    /**
+     * Input of the last [test] example without generating the test data set, see [lastInput].
+     */
+    @JvmOverloads
+    fun lastTestInput(input: INDArray = createInput()): INDArray {
+        val testCloses = DoubleArray(testCandles.size) { testCandles[it].close }
+        return lastInput(indicators!!, testCloses, mins, maxs, closes, input)
     }
 
     private fun generateTestDataSet(stockDataList: List<Candle>): List<Pair<INDArray, Double>> {
@@ -211,13 +265,13 @@ class StockDataSetIterator(stockDataList: List<Candle>, splitRatio: Double = 1.0
         for (i in VECTOR_SIZE_2 until stockDataList.size - 1) {
             var k = 0
             val input = Nd4j.create(intArrayOf(1, inputColumns()), 'f')
-            val debugVector = ArrayList<String>(inputColumns())
+            val debugVector = if (log.isTraceEnabled) ArrayList<String>(inputColumns()) else null
             while (k < VECTOR_SIZE_1) {
                 var n = 0
                 while (n <= VECTOR_K) {
                     val indicator = if (l < indicators!![n].size - 1) indicators!![n][l] else indicators!![n][indicators!![n].size - 1]
                     input.putScalar(intArrayOf(0, k), normalize(indicator, mins[n], maxs[n]))
-                    debugVector.add("$n($l):$indicator")
+                    debugVector?.add("$n($l):$indicator")
                     k++
                     n++
                 }
@@ -229,36 +283,45 @@ class StockDataSetIterator(stockDataList: List<Candle>, splitRatio: Double = 1.0
             while (k < VECTOR_SIZE_1 + VECTOR_SIZE_2) {
                 val close = if (i - j < stockDataList.size - 1) stockDataList[i - j].close else stockDataList[stockDataList.size - 1].close
                 input.putScalar(intArrayOf(0, k), normalize(close, closes[0], closes[1]))
-                debugVector.add((i - j).toString() + ":" + close)
+                debugVector?.add((i - j).toString() + ":" + close)
                 k++
                 j--
             }
             test.add(Pair(input, normalize(stockDataList[i - j].close, closes[0], closes[1])))
-            debugVector.add("res " + (i - j) + ": " + stockDataList[i - j].close)
-            log.trace("TestDataSet " + (i - VECTOR_SIZE_2) + ": " + debugVector.toString())
+            debugVector?.add("res " + (i - j) + ": " + stockDataList[i - j].close)
+            if (debugVector != null) log.trace("TestDataSet " + (i - VECTOR_SIZE_2) + ": " + debugVector.toString())
         }
         return test
     }
 
+    @Synchronized
     override fun next(num: Int): DataSet {
-        if (exampleStartOffsets.size == 0) throw NoSuchElementException()
+        if (!hasNext()) throw NoSuchElementException()
+
+        val actualMiniBatchSize = Math.min(num, exampleLimit - exampleCursor)
+        val columns = inputColumns()
+        val outcomes = totalOutcomes()
+        if (inputBuffer.size != actualMiniBatchSize * columns * LENGTH) {
+            inputBuffer = FloatArray(actualMiniBatchSize * columns * LENGTH)
+            labelBuffer = FloatArray(actualMiniBatchSize * outcomes * LENGTH)
+        }
 
-        val actualMiniBatchSize = Math.min(num, exampleStartOffsets.size)
-        val input = Nd4j.create(intArrayOf(actualMiniBatchSize, inputColumns(), LENGTH), 'f')
-        val label = Nd4j.create(intArrayOf(actualMiniBatchSize, totalOutcomes(), LENGTH), 'f')
+        // 'f' order [example, column, time]: the example index changes fastest
+        val trace = log.isTraceEnabled
         for (index in 0 until actualMiniBatchSize) {
-            val startIdx = exampleStartOffsets.removeFirst() + VECTOR_SIZE_2
+            val startIdx = exampleCursor++ + VECTOR_SIZE_2
             var l = startIdx - VECTOR_SIZE_2
             for (i in startIdx until startIdx + LENGTH) {
+                val time = (i - startIdx) * columns
                 // input
                 var k = 0
-                val debugVector = ArrayList<String>(inputColumns())
+                val debugVector = if (trace) ArrayList<String>(columns) else null
                 while (k < VECTOR_SIZE_1) {
                     var n = 0
                     while (n <= VECTOR_K) {
                         val indicator = if (l < indicators!![n].size - 1) indicators!![n][l] else indicators!![n][indicators!![n].size - 1]
-                        input.putScalar(intArrayOf(index, k, i - startIdx), normalize(indicator, mins[n], maxs[n]))
-                        debugVector.add("$n($l):$indicator")
+                        inputBuffer[index + actualMiniBatchSize * (k + time)] = normalize(indicator, mins[n], maxs[n]).toFloat()
+                        debugVector?.add("$n($l):$indicator")
                         k++
                         n++
                     }
@@ -268,31 +331,33 @@ class StockDataSetIterator(stockDataList: List<Candle>, splitRatio: Double = 1.0
                 k = VECTOR_SIZE_1
                 var j = VECTOR_SIZE_2
                 while (k < VECTOR_SIZE_1 + VECTOR_SIZE_2) {
-                    val close = if (i - j < train.size - 1) train[i - j].close else train[train.size - 1].close
-                    input.putScalar(intArrayOf(index, k, i - startIdx), normalize(close, closes[0], closes[1]))
-                    debugVector.add((i - j).toString() + ":$close")
+                    val close = if (i - j < trainCloses.size - 1) trainCloses[i - j] else trainCloses[trainCloses.size - 1]
+                    inputBuffer[index + actualMiniBatchSize * (k + time)] = normalize(close, closes[0], closes[1]).toFloat()
+                    debugVector?.add((i - j).toString() + ":$close")
                     k++
                     j--
                 }
                 // label
                 val predictIndex = when {
-                    train.size - 1 > i + 3 -> i + 3
-                    train.size - 1 > i + 2 -> i + 2
-                    train.size - 1 > i + 1 -> i + 1
-                    train.size - 1 > i -> i
-                    else -> train.size - 1
+                    trainCloses.size - 1 > i + 3 -> i + 3
+                    trainCloses.size - 1 > i + 2 -> i + 2
+                    trainCloses.size - 1 > i + 1 -> i + 1
+                    trainCloses.size - 1 > i -> i
+                    else -> trainCloses.size - 1
                 }
-                for (labelValue in 0 until totalOutcomes() - 1) {
-                    label.putScalar(intArrayOf(index, labelValue, i - startIdx), normalize(indicators!![labelValue][predictIndex], mins[labelValue], maxs[labelValue]))
-                    debugVector.add("resInd" + labelValue + " $predictIndex:" + indicators!![labelValue][predictIndex])
+                val labelTime = (i - startIdx) * outcomes
+                for (labelValue in 0 until outcomes - 1) {
+                    labelBuffer[index + actualMiniBatchSize * (labelValue + labelTime)] = normalize(indicators!![labelValue][predictIndex], mins[labelValue], maxs[labelValue]).toFloat()
+                    debugVector?.add("resInd" + labelValue + " $predictIndex:" + indicators!![labelValue][predictIndex])
                 }
-                label.putScalar(intArrayOf(index, totalOutcomes() - 1, i - startIdx), normalize(train[predictIndex].close, closes[0], closes[1]))
-                debugVector.add("resClose" + (totalOutcomes() - 1) + " $predictIndex:" + train[predictIndex].close)
-                log.trace("NextDataSet $index(" + (i - startIdx) + "): " + debugVector.toString())
+                labelBuffer[index + actualMiniBatchSize * (outcomes - 1 + labelTime)] = normalize(trainCloses[predictIndex], closes[0], closes[1]).toFloat()
+                debugVector?.add("resClose" + (outcomes - 1) + " $predictIndex:" + trainCloses[predictIndex])
+                if (debugVector != null) log.trace("NextDataSet $index(" + (i - startIdx) + "): " + debugVector.toString())
             }
-            if (exampleStartOffsets.size == 0) break
         }
 
+        val input = Nd4j.create(inputBuffer, intArrayOf(actualMiniBatchSize, columns, LENGTH), 'f')
+        val label = Nd4j.create(labelBuffer, intArrayOf(actualMiniBatchSize, outcomes, LENGTH), 'f')
         return DataSet(input, label)
     }
 
@@ -313,13 +378,15 @@ class StockDataSetIterator(stockDataList: List<Candle>, splitRatio: Double = 1.0
     }
 
     override fun resetSupported(): Boolean {
-        return false
+        return true
     }
 
+    // next and reset are synchronized, so AsyncDataSetIterator can prefetch mini-batches on its own thread
     override fun asyncSupported(): Boolean {
-        return false
+        return true
     }
 
+    @Synchronized
     override fun reset() {
         initializeOffsets()
     }
@@ -328,8 +395,9 @@ class StockDataSetIterator(stockDataList: List<Candle>, splitRatio: Double = 1.0
         return MINI_BATCH_SIZE
     }
 
+    @Synchronized
     override fun cursor(): Int {
-        return totalExamples() - exampleStartOffsets.size
+        return exampleCursor
     }
 
     override fun numExamples(): Int {
@@ -348,8 +416,9 @@ class StockDataSetIterator(stockDataList: List<Candle>, splitRatio: Double = 1.0
         return null
     }
 
+    @Synchronized
     override fun hasNext(): Boolean {
-        return exampleStartOffsets.size > 0
+        return exampleCursor < exampleLimit
     }
 
     override fun next(): DataSet {
@@ -0,0 +1,64 @@
+package com.oanda.predictor.actor
+
+import com.oanda.predictor.repository.CandleSeries
+import com.oanda.predictor.util.CSVUtil
+import com.oanda.predictor.util.StockDataSetIterator
+import org.nd4j.linalg.ops.transforms.Transforms
+import org.slf4j.LoggerFactory
+import java.sql.Timestamp
+import java.util.concurrent.TimeUnit
+
+class NormalizerParityTest
+
+private val log = LoggerFactory.getLogger(NormalizerParityTest::class.java)
+
+private const val DATA_SIZE = 1_000
+private const val ITERATIONS = 2_000
+
+fun main(args: Array<String>) {
+    parityTest()
+}
+
+/**
+ * The actor input of a series holding the training window, scaled with the ranges saved with the model,
+ * equals the features the iterator builds for the same candles. Reports how far the former scaling
+ * on the last window was off and the time the range scan took.
+ */
+fun parityTest() {
+    val dataFile = NormalizerParityTest::class.java.getResource("/Data.csv").file
+    val candles = CSVUtil.getCandles(dataFile, DATA_SIZE)
+    candles.forEachIndexed { i, candle -> candle.time = Timestamp(i * TimeUnit.MINUTES.toMillis(15)) }
+
+    // the ranges of the training, as the actor saves them
+    val training = StockDataSetIterator(candles, 1.0)
+    val mins = training.mins.clone()
+    val maxs = training.maxs.clone()
+    val closeRange = training.closes.clone()
+
+    val series = CandleSeries("Data", 15, DATA_SIZE)
+    candles.forEach { series.add(it) }
+    val size = StockDataSetIterator.getVectorSize()
+    val closes = DoubleArray(size)
+    val indicators = Array(StockDataSetIterator.VECTOR_K + 1) { DoubleArray(size) }
+    series.copyLast(closes, indicators)
+
+    val saved = StockDataSetIterator.lastInput(indicators, closes, mins, maxs, closeRange)
+    val expected = StockDataSetIterator(candles, 0.9).lastTestInput()
+    if (!saved.equalsWithEps(expected, 1e-12)) throw AssertionError("Input with the saved ranges differs from the training features")
+
+    val windowMins = DoubleArray(mins.size)
+    val windowMaxs = DoubleArray(maxs.size)
+    val windowCloseRange = DoubleArray(2)
+    val scan = { StockDataSetIterator.windowRanges(indicators, closes, windowMins, windowMaxs, windowCloseRange) }
+    scan()
+    val window = StockDataSetIterator.lastInput(indicators, closes, windowMins, windowMaxs, windowCloseRange)
+    val deviation = Transforms.abs(window.sub(expected)).maxNumber().toDouble()
+
+    for (i in 0 until ITERATIONS) scan() // warm up
+    val start = System.nanoTime()
+    for (i in 0 until ITERATIONS) scan()
+    val scanMicros = (System.nanoTime() - start) / 1_000.0 / ITERATIONS
+
+    log.info("Saved ranges match the training features; window ranges were off by up to {} (normalized), their scan took {} us/predict",
+            deviation, scanMicros)
+}
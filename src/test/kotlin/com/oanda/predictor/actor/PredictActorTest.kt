@@ -0,0 +1,102 @@
+package com.oanda.predictor.actor
+
+import akka.actor.ActorSystem
+import akka.actor.Props
+import akka.japi.Creator
+import akka.pattern.PatternsCS
+import akka.util.Timeout
+import com.oanda.predictor.config.MeteredTaskExecutor
+import com.oanda.predictor.config.propertyProfiles
+import com.oanda.predictor.repository.CandleRepository
+import com.oanda.predictor.repository.ModelRegistry
+import com.oanda.predictor.repository.ModelSlot
+import com.oanda.predictor.repository.PredictionRepository
+import com.oanda.predictor.util.CSVUtil
+import com.oanda.predictor.util.LSTMNetwork
+import com.oanda.predictor.util.StockDataSetIterator
+import org.slf4j.LoggerFactory
+import java.sql.Timestamp
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.TimeUnit
+
+class PredictActorTest
+
+private val log = LoggerFactory.getLogger(PredictActorTest::class.java)
+
+private const val WINDOW_SIZE = 800
+private const val TICKS = 200
+private const val REQUESTS_PER_TICK = 4
+private const val SYMBOL = "EURUSD"
+private const val STEP = 15
+
+fun main(args: Array<String>) {
+    concurrentPredictTest()
+}
+
+/**
+ * Requests of one series predict in parallel on their own inference workers while its candles come in, requests of
+ * the same window share one prediction, and the signal stored last is the one of the last window.
+ */
+fun concurrentPredictTest() {
+    val dataFile = PredictActorTest::class.java.getResource("/Data.csv").file
+    val candles = CSVUtil.getCandles(dataFile, WINDOW_SIZE + TICKS)
+    candles.forEachIndexed { i, candle ->
+        candle.symbol = SYMBOL
+        candle.step = STEP
+        candle.time = Timestamp((i + 1) * TimeUnit.MINUTES.toMillis(STEP.toLong()))
+    }
+
+    val candleRepository = CandleRepository()
+    CandleRepository::class.java.getDeclaredField("limit").apply { isAccessible = true }.set(candleRepository, WINDOW_SIZE)
+    candles.subList(0, WINDOW_SIZE).forEach { candleRepository.addCandle(it) }
+
+    val iterator = StockDataSetIterator(candles.subList(0, WINDOW_SIZE), 1.0)
+    val entry = ModelRegistry.Entry()
+    entry.symbol = SYMBOL
+    entry.step = STEP
+    entry.closeMin = iterator.closes[0]
+    entry.closeMax = iterator.closes[1]
+    entry.mins = iterator.mins.clone()
+    entry.maxs = iterator.maxs.clone()
+    val model = ModelRegistry.Model(entry, LSTMNetwork.createNetwork(iterator, propertyProfiles().getValue("small")))
+
+    val predictionRepository = PredictionRepository()
+    val predictExecutor = MeteredTaskExecutor()
+    predictExecutor.corePoolSize = REQUESTS_PER_TICK
+    predictExecutor.setQueueCapacity(TICKS * REQUESTS_PER_TICK)
+    predictExecutor.initialize()
+
+    val system = ActorSystem.create("PredictActorTest")
+    val actor = system.actorOf(Props.create(LearnActor::class.java, Creator {
+        val learnActor = LearnActor(SYMBOL, STEP)
+        inject(learnActor, "candleRepository", candleRepository)
+        inject(learnActor, "predictionRepository", predictionRepository)
+        inject(learnActor, "predictExecutor", predictExecutor)
+        (field("modelSlot").get(learnActor) as ModelSlot).set(model)
+        learnActor
+    }))
+
+    val timeout = Timeout(30, TimeUnit.SECONDS)
+    val answers = ArrayList<CompletableFuture<Any>>()
+    val start = System.nanoTime()
+    for (candle in candles.subList(WINDOW_SIZE, candles.size)) {
+        candleRepository.addCandle(candle)
+        repeat(REQUESTS_PER_TICK) { answers.add(PatternsCS.ask(actor, Messages.PREDICT, timeout).toCompletableFuture()) }
+    }
+    CompletableFuture.allOf(*answers.toTypedArray()).join()
+    val seconds = (System.nanoTime() - start) / 1e9
+    system.terminate()
+    predictExecutor.shutdown()
+
+    val prediction = predictionRepository.getPrediction(SYMBOL, STEP)
+    if (prediction.candleTime != candles.last().time) {
+        throw AssertionError("Stored prediction of ${prediction.candleTime} instead of the last window ${candles.last().time}")
+    }
+    if (model.engine.workers < 2) throw AssertionError("Predictions of the series never ran in parallel")
+    log.info("{} requests on {} windows answered in {} s, {} inference workers, {} signal changes",
+            answers.size, TICKS, "%.1f".format(seconds), model.engine.workers, prediction.version)
+}
+
+private fun field(name: String) = LearnActor::class.java.getDeclaredField(name).apply { isAccessible = true }
+
+private fun inject(actor: LearnActor, name: String, value: Any) = field(name).set(actor, value)
@@ -0,0 +1,69 @@
+package com.oanda.predictor.actor
+
+import com.oanda.predictor.repository.CandleSeries
+import com.oanda.predictor.util.CSVUtil
+import com.oanda.predictor.util.StockDataSetIterator
+import org.slf4j.LoggerFactory
+import java.sql.Timestamp
+import java.util.concurrent.TimeUnit
+
+class PredictLatencyBenchmark
+
+private val log = LoggerFactory.getLogger(PredictLatencyBenchmark::class.java)
+
+private const val DATA_SIZE = 1_000
+private const val ITERATIONS = 2_000
+
+fun main(args: Array<String>) {
+    predictLatencyBenchmark()
+}
+
+/**
+ * Latency of the prediction input behind /api/prediction: a StockDataSetIterator rebuilt on the window
+ * against the window read from the series indicator cache. The network forward pass is the same for both.
+ */
+fun predictLatencyBenchmark() {
+    val dataFile = PredictLatencyBenchmark::class.java.getResource("/Data.csv").file
+    val candles = CSVUtil.getCandles(dataFile, DATA_SIZE)
+    candles.forEachIndexed { i, candle -> candle.time = Timestamp(i * TimeUnit.MINUTES.toMillis(15)) }
+
+    val size = StockDataSetIterator.getVectorSize()
+    val window = candles.subList(candles.size - size, candles.size)
+    val series = CandleSeries("Data", 15, DATA_SIZE)
+    window.forEach { series.add(it) }
+
+    val closes = DoubleArray(size)
+    val indicators = Array(StockDataSetIterator.VECTOR_K + 1) { DoubleArray(size) }
+    val mins = DoubleArray(StockDataSetIterator.VECTOR_K + 1)
+    val maxs = DoubleArray(StockDataSetIterator.VECTOR_K + 1)
+    val closeRange = DoubleArray(2)
+    val input = StockDataSetIterator.createInput()
+    val cached = {
+        series.copyLast(closes, indicators)
+        StockDataSetIterator.windowRanges(indicators, closes, mins, maxs, closeRange)
+        StockDataSetIterator.lastInput(indicators, closes, mins, maxs, closeRange, input)
+    }
+    val testSet = {
+        val iterator = StockDataSetIterator(series.copyLast(size), 0.0)
+        iterator.test[iterator.test.size - 1].key
+    }
+    val lastTest = {
+        StockDataSetIterator(series.copyLast(size), 0.0).lastTestInput(input)
+    }
+
+    // all paths see the same candles here, so the inputs must be equal
+    val expected = testSet()
+    if (!cached().equalsWithEps(expected, 1e-12)) throw AssertionError("Cached input differs from the test data set")
+    if (!lastTest().equalsWithEps(expected, 1e-12)) throw AssertionError("Last test input differs from the test data set")
+
+    log.info("Rebuilt window, test data set: {} us/predict", measure(testSet))
+    log.info("Rebuilt window, last test input: {} us/predict", measure(lastTest))
+    log.info("Cached window: {} us/predict", measure(cached))
+}
+
+private fun measure(predict: () -> Any): Double {
+    for (i in 0 until ITERATIONS) predict() // warm up
+    val start = System.nanoTime()
+    for (i in 0 until ITERATIONS) predict()
+    return (System.nanoTime() - start) / 1_000.0 / ITERATIONS
+}
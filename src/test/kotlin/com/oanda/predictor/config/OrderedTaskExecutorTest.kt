@@ -0,0 +1,39 @@
+package com.oanda.predictor.config
+
+import org.slf4j.LoggerFactory
+import java.util.Collections
+import java.util.concurrent.ConcurrentHashMap
+import kotlin.concurrent.thread
+
+class OrderedTaskExecutorTest
+
+private val log = LoggerFactory.getLogger(OrderedTaskExecutorTest::class.java)
+
+private const val KEYS = 28
+private const val TASKS_PER_KEY = 10_000
+
+fun main(args: Array<String>) {
+    orderTest()
+}
+
+/**
+ * Tasks of every key run in the order their submitter sent them, while submitters of all keys run at once and the
+ * small queues make them wait for room.
+ */
+fun orderTest() {
+    val executor = OrderedTaskExecutor("Ordered-", 4, 16)
+    val runs = ConcurrentHashMap<Int, MutableList<Int>>()
+    (0 until KEYS).map { key ->
+        thread {
+            val order = Collections.synchronizedList(ArrayList<Int>())
+            runs[key] = order
+            for (task in 0 until TASKS_PER_KEY) executor.execute("SYMBOL$key") { order.add(task) }
+        }
+    }.forEach { it.join() }
+    executor.shutdown()
+
+    for ((key, order) in runs) {
+        if (order != (0 until TASKS_PER_KEY).toList()) throw AssertionError("Tasks of key $key ran out of order")
+    }
+    log.info("Tasks of {} keys ran in order: {}", KEYS, executor.metrics)
+}
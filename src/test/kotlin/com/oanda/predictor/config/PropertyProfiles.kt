@@ -0,0 +1,22 @@
+package com.oanda.predictor.config
+
+import com.oanda.predictor.util.LSTMNetwork
+import org.springframework.core.env.StandardEnvironment
+import org.springframework.core.io.support.ResourcePropertySource
+
+private val PROFILE_LAYERS = Regex("predictor\\.network\\.profiles\\.(.+)\\.layers")
+
+/**
+ * The profiles of application.properties by name, parsed by [NetworkProfiles] as the application does.
+ */
+fun propertyProfiles(): Map<String, LSTMNetwork.Profile> {
+    val properties = ResourcePropertySource("classpath:application.properties")
+    val environment = StandardEnvironment()
+    environment.propertySources.addFirst(properties)
+    val profiles = NetworkProfiles()
+    NetworkProfiles::class.java.getDeclaredField("environment").apply { isAccessible = true }.set(profiles, environment)
+
+    return properties.propertyNames.sorted()
+            .mapNotNull { PROFILE_LAYERS.matchEntire(it)?.groupValues?.get(1) }
+            .associate { it to profiles.get(it) }
+}
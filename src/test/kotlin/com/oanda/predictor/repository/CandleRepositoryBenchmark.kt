@@ -0,0 +1,111 @@
+package com.oanda.predictor.repository
+
+import com.oanda.predictor.domain.Candle
+import org.slf4j.LoggerFactory
+import java.sql.Timestamp
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
+
+class CandleRepositoryBenchmark
+
+private val log = LoggerFactory.getLogger(CandleRepositoryBenchmark::class.java)
+
+private const val LIMIT = 1_000
+private const val TICKS_PER_SERIES = 200_000
+private const val TICKS_PER_CANDLE = 10
+
+fun main(args: Array<String>) {
+    contentionBenchmark()
+    hotSymbolBenchmark()
+}
+
+/**
+ * Ingest throughput (ticks/sec) of [CandleRepository.addCandle] by count of symbols and writer threads.
+ * Every series is written by one thread at a time, as the MT4 terminals do; see [hotSymbolBenchmark] for one series
+ * written by many.
+ */
+fun contentionBenchmark() {
+    for (symbols in intArrayOf(1, 4, 28)) {
+        for (threads in intArrayOf(1, 2, 4, 8)) {
+            if (threads > symbols) continue
+            ingest(symbols, threads) // warm up
+            val ticksPerSecond = ingest(symbols, threads)
+            log.info("symbols: {}, threads: {}, ticks/sec: {}", symbols, threads, ticksPerSecond)
+        }
+    }
+}
+
+/**
+ * Ingest throughput (ticks/sec) of one hot series written by all threads at once, the contended case of the series lock.
+ */
+fun hotSymbolBenchmark() {
+    for (threads in intArrayOf(1, 2, 4, 8)) {
+        ingestHot(threads) // warm up
+        log.info("hot symbol, threads: {}, ticks/sec: {}", threads, ingestHot(threads))
+    }
+}
+
+private fun ingestHot(threads: Int): Long {
+    val repository = repository()
+    val ticks = AtomicLong()
+    val executor = Executors.newFixedThreadPool(threads)
+    val done = CountDownLatch(threads)
+    val start = System.nanoTime()
+    for (thread in 0 until threads) {
+        executor.submit {
+            val candle = Candle()
+            candle.symbol = "SYMBOL0"
+            candle.step = 15
+            var tick = ticks.getAndIncrement()
+            while (tick < TICKS_PER_SERIES) {
+                candle.time = Timestamp((tick / TICKS_PER_CANDLE) * TimeUnit.MINUTES.toMillis(15))
+                candle.close = 1.0 + tick % 100 / 10_000.0
+                repository.addCandle(candle)
+                tick = ticks.getAndIncrement()
+            }
+            done.countDown()
+        }
+    }
+    done.await()
+    val elapsed = System.nanoTime() - start
+    executor.shutdown()
+
+    return TICKS_PER_SERIES * TimeUnit.SECONDS.toNanos(1) / elapsed
+}
+
+private fun repository(): CandleRepository {
+    val repository = CandleRepository()
+    CandleRepository::class.java.getDeclaredField("limit").apply { isAccessible = true }.set(repository, LIMIT)
+    return repository
+}
+
+private fun ingest(symbols: Int, threads: Int): Long {
+    val repository = repository()
+    val executor = Executors.newFixedThreadPool(threads)
+    val done = CountDownLatch(threads)
+    val start = System.nanoTime()
+    for (thread in 0 until threads) {
+        executor.submit {
+            var symbol = thread
+            while (symbol < symbols) {
+                val candle = Candle()
+                candle.symbol = "SYMBOL$symbol"
+                candle.step = 15
+                for (tick in 0 until TICKS_PER_SERIES) {
+                    candle.time = Timestamp((tick / TICKS_PER_CANDLE) * TimeUnit.MINUTES.toMillis(15))
+                    candle.close = 1.0 + tick % 100 / 10_000.0
+                    repository.addCandle(candle)
+                }
+                symbol += threads
+            }
+            done.countDown()
+        }
+    }
+    done.await()
+    val elapsed = System.nanoTime() - start
+    executor.shutdown()
+
+    return symbols.toLong() * TICKS_PER_SERIES * TimeUnit.SECONDS.toNanos(1) / elapsed
+}
@@ -0,0 +1,82 @@
+package com.oanda.predictor.repository
+
+import com.oanda.predictor.util.CSVUtil
+import com.oanda.predictor.util.LSTMNetwork
+import com.oanda.predictor.util.StockDataSetIterator
+import org.slf4j.LoggerFactory
+import java.nio.file.Files
+import java.nio.file.Path
+
+class ModelRegistryBenchmark
+
+private val log = LoggerFactory.getLogger(ModelRegistryBenchmark::class.java)
+
+private const val DATA_SIZE = 1_000
+private val SYMBOLS = listOf("EURUSD", "GBPUSD", "USDJPY", "AUDUSD", "USDCHF", "USDCAD", "NZDUSD", "EURJPY")
+private const val STEP = 15
+
+fun main(args: Array<String>) {
+    coldStartBenchmark()
+}
+
+/**
+ * Saves a default network per symbol, checks the index and the snapshot files, then measures the cold start of
+ * a new registry by load threads: time to the first prediction and until all models are loaded.
+ */
+fun coldStartBenchmark() {
+    val dataFile = ModelRegistryBenchmark::class.java.getResource("/Data.csv").file
+    val iterator = StockDataSetIterator(CSVUtil.getCandles(dataFile, DATA_SIZE), 0.9)
+    val input = iterator.lastTestInput()
+    val dir = Files.createTempDirectory("models")
+
+    val registry = registry(dir, 1)
+    registry.load().join()
+    for (symbol in SYMBOLS) {
+        // the second save replaces the first snapshot
+        for (i in 0 until 2) registry.save(entry(symbol, iterator), LSTMNetwork.createNetwork(iterator))
+    }
+    val files = Files.list(dir).use { stream -> stream.map { it.fileName.toString() }.sorted().toArray() }
+    check(files.size == SYMBOLS.size + 1 && files.none { it.toString().endsWith(".tmp") })
+    check(registry.getIndex().values.all { it.version == 2L && it.file.endsWith("_v2.zip") })
+
+    for (threads in intArrayOf(1, 2, 4)) {
+        val start = System.nanoTime()
+        val coldRegistry = registry(dir, threads)
+        val loaded = coldRegistry.load()
+        val model = coldRegistry.get(SYMBOLS[0], STEP)!!
+        model.network.rnnTimeStep(input)
+        val firstPrediction = (System.nanoTime() - start) / 1_000_000
+        loaded.join()
+        val all = (System.nanoTime() - start) / 1_000_000
+        check(model.entry.closeMax == iterator.closes[1] && model.entry.mins!!.contentEquals(iterator.mins))
+
+        log.info("Models: {}, load threads: {}, first prediction after {} ms, all loaded after {} ms", SYMBOLS.size, threads, firstPrediction, all)
+    }
+
+    Files.list(dir).use { stream -> stream.forEach { Files.delete(it) } }
+    Files.delete(dir)
+}
+
+private fun registry(dir: Path, threads: Int): ModelRegistry {
+    val registry = ModelRegistry()
+    ModelRegistry::class.java.getDeclaredField("storeDisk").apply { isAccessible = true }.set(registry, true)
+    ModelRegistry::class.java.getDeclaredField("storePath").apply { isAccessible = true }.set(registry, dir.toString())
+    ModelRegistry::class.java.getDeclaredField("loadThreads").apply { isAccessible = true }.set(registry, threads)
+    return registry
+}
+
+private fun entry(symbol: String, iterator: StockDataSetIterator): ModelRegistry.Entry {
+    val entry = ModelRegistry.Entry()
+    entry.symbol = symbol
+    entry.step = STEP
+    entry.closeMin = iterator.closes[0]
+    entry.closeMax = iterator.closes[1]
+    entry.mins = iterator.mins
+    entry.maxs = iterator.maxs
+    entry.training = "SCRATCH"
+    return entry
+}
+
+private fun check(condition: Boolean) {
+    if (!condition) throw AssertionError()
+}
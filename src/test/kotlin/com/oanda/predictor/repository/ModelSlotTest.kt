@@ -0,0 +1,116 @@
+package com.oanda.predictor.repository
+
+import com.oanda.predictor.config.propertyProfiles
+import com.oanda.predictor.util.CSVUtil
+import com.oanda.predictor.util.LSTMNetwork
+import com.oanda.predictor.util.StockDataSetIterator
+import org.slf4j.LoggerFactory
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicLong
+import kotlin.concurrent.thread
+
+class ModelSlotTest
+
+private val log = LoggerFactory.getLogger(ModelSlotTest::class.java)
+
+private const val DATA_SIZE = 1_000
+private const val SERIES = 4
+private const val SECONDS = 10L
+private val PROFILE = propertyProfiles().getValue("small")
+
+fun main(args: Array<String>) {
+    leaseTest()
+    swapBenchmark()
+}
+
+/**
+ * A lease keeps the model it was taken on through a swap; the replaced model is released when the lease is closed.
+ */
+fun leaseTest() {
+    val iterator = iterator()
+    val input = StockDataSetIterator.createSequence()
+    val slot = ModelSlot()
+    check(slot.acquire() == null)
+
+    val old = model(iterator, 1)
+    slot.set(old)
+    val lease = slot.acquire()!!
+    lease.model.engine.predict(input)
+
+    val new = model(iterator, 2)
+    slot.set(new)
+    check(slot.get() === new && !slot.setIfEmpty(old))
+    // the in-flight prediction still runs on the old model and its workers
+    check(lease.model === old && old.engine.workers == 1)
+    lease.model.engine.predict(input)
+
+    lease.close()
+    lease.close()
+    check(old.engine.workers == 0)
+    slot.acquire()!!.use { check(it.model === new) }
+
+    log.info("Model leases are fine")
+}
+
+/**
+ * Prediction throughput of one predicting thread per series while another thread swaps the models of all series
+ * as fast as it can, against the same without swaps. Reports the mean time of a lease acquire.
+ */
+fun swapBenchmark() {
+    val iterator = iterator()
+    val input = StockDataSetIterator.createSequence()
+    val trained = model(iterator, 1)
+    for (swap in listOf(false, true)) {
+        val slots = List(SERIES) { ModelSlot().apply { set(ModelRegistry.Model(trained.entry, trained.network.clone())) } }
+        val running = AtomicBoolean(true)
+        val predictions = AtomicLong()
+        val acquireNanos = AtomicLong()
+        val swaps = AtomicLong()
+        val done = CountDownLatch(SERIES)
+
+        for (slot in slots) {
+            thread {
+                while (running.get()) {
+                    val start = System.nanoTime()
+                    slot.acquire()!!.use { lease ->
+                        acquireNanos.addAndGet(System.nanoTime() - start)
+                        lease.model.engine.predict(input)
+                    }
+                    predictions.incrementAndGet()
+                }
+                done.countDown()
+            }
+        }
+        // every swap brings a new network, as a training does
+        if (swap) thread {
+            while (running.get()) {
+                slots[(swaps.getAndIncrement() % SERIES).toInt()].set(ModelRegistry.Model(trained.entry, trained.network.clone()))
+            }
+        }
+
+        Thread.sleep(TimeUnit.SECONDS.toMillis(SECONDS))
+        running.set(false)
+        done.await()
+        log.info("Series: {}, swaps: {}, predictions/sec: {}, acquire: {} ns",
+                SERIES, swaps.get(), predictions.get() / SECONDS, acquireNanos.get() / predictions.get())
+    }
+}
+
+private fun iterator(): StockDataSetIterator {
+    val dataFile = ModelSlotTest::class.java.getResource("/Data.csv").file
+    return StockDataSetIterator(CSVUtil.getCandles(dataFile, DATA_SIZE), 0.9)
+}
+
+private fun model(iterator: StockDataSetIterator, version: Long): ModelRegistry.Model {
+    val entry = ModelRegistry.Entry()
+    entry.symbol = "EURUSD"
+    entry.step = 15
+    entry.version = version
+    return ModelRegistry.Model(entry, LSTMNetwork.createNetwork(iterator, PROFILE))
+}
+
+private fun check(condition: Boolean) {
+    if (!condition) throw AssertionError()
+}
@@ -0,0 +1,50 @@
+package com.oanda.predictor.repository
+
+import com.oanda.predictor.repository.PredictionRepository.Signal
+import org.slf4j.LoggerFactory
+import java.util.concurrent.TimeUnit
+
+class PredictionRepositoryTest
+
+private val log = LoggerFactory.getLogger(PredictionRepositoryTest::class.java)
+
+fun main(args: Array<String>) {
+    subscribeTest()
+}
+
+/**
+ * Steps of one symbol are kept apart, versions only move on a change and waiters are notified of it.
+ */
+fun subscribeTest() {
+    val repository = PredictionRepository()
+    check(repository.getPrediction("EURUSD", 15).version == 0L)
+
+    val waiter = repository.subscribe("EURUSD", 15, 0)
+    check(!waiter.isDone)
+
+    repository.addPredict("EURUSD", 5, Signal.DOWN, 1000)
+    check(!waiter.isDone)
+
+    repository.addPredict("EURUSD", 15, Signal.UP, 1000)
+    val notified = waiter.get(1, TimeUnit.SECONDS)
+    check(notified.signal == Signal.UP && notified.version == 1L && notified.candleTime.time == 1000L)
+    check(repository.getSignal("EURUSD", 5) == Signal.DOWN)
+
+    // the same signal of the same candle is no change
+    repository.addPredict("EURUSD", 15, Signal.UP, 1000)
+    check(repository.getPrediction("EURUSD", 15).version == 1L)
+    check(repository.subscribe("EURUSD", 15, 0).isDone)
+
+    // a timed out long-poll is not notified, the next subscriber is
+    val cancelled = repository.subscribe("EURUSD", 15, 1)
+    cancelled.cancel(false)
+    val next = repository.subscribe("EURUSD", 15, 1)
+    repository.addPredict("EURUSD", 15, Signal.NONE, 2000)
+    check(cancelled.isCancelled && next.get(1, TimeUnit.SECONDS).version == 2L)
+
+    log.info("Prediction subscriptions are fine")
+}
+
+private fun check(condition: Boolean) {
+    if (!condition) throw AssertionError()
+}
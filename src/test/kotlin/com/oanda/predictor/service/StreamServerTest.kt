@@ -0,0 +1,113 @@
+package com.oanda.predictor.service
+
+import com.oanda.predictor.domain.Candle
+import com.oanda.predictor.repository.PredictionRepository.Signal
+import com.oanda.predictor.util.CandleCodec
+import org.slf4j.LoggerFactory
+import java.io.BufferedReader
+import java.io.InputStreamReader
+import java.net.Socket
+import java.sql.Timestamp
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.TimeUnit
+import kotlin.system.exitProcess
+
+class StreamServerTest
+
+private val log = LoggerFactory.getLogger(StreamServerTest::class.java)
+
+private const val TICKS = 10_000
+
+fun main(args: Array<String>) {
+    loopbackTest()
+    exitProcess(0)
+}
+
+/**
+ * Streams history and live candles through a loopback connection: history is only ingested,
+ * every live candle is ingested in order and answered with its signal; a connection beyond the cap is closed.
+ * Reports the tick round-trip.
+ */
+fun loopbackTest() {
+    val ingested = CopyOnWriteArrayList<Candle>()
+    val learnService = object : LearnService() {
+        override fun ingest(candle: Candle) {
+            ingested.add(candle)
+        }
+
+        override fun predict(symbol: String, step: Int): CompletableFuture<Signal> {
+            val last = ingested.last()
+            return CompletableFuture.completedFuture(if (last.close > last.open) Signal.UP else Signal.DOWN)
+        }
+    }
+
+    val server = server(learnService, 1)
+
+    Socket("localhost", server.localPort).use { socket ->
+        socket.getOutputStream().write(CandleCodec.encode(listOf(candle(0, false))))
+        // the first connection is served by now, the second one is beyond the cap
+        Thread.sleep(200)
+        Socket("localhost", server.localPort).use { refused ->
+            refused.soTimeout = 5_000
+            if (refused.getInputStream().read() != -1) throw AssertionError("A connection beyond the cap was served")
+        }
+    }
+    log.info("A connection beyond the cap is closed")
+    // until the server drops the closed connection
+    Thread.sleep(200)
+    ingested.clear()
+
+    Socket("localhost", server.localPort).use { socket ->
+        socket.tcpNoDelay = true
+        val output = socket.getOutputStream()
+        val input = BufferedReader(InputStreamReader(socket.getInputStream()))
+
+        // the header and the history go first, nothing comes back for them
+        val history = CandleCodec.encode((0 until 100).map { candle(it, false) })
+        output.write(history)
+
+        val rtts = LongArray(TICKS)
+        for (tick in 0 until TICKS) {
+            val record = CandleCodec.encode(listOf(candle(100 + tick, true)))
+            val start = System.nanoTime()
+            output.write(record, record.size - CandleCodec.RECORD_SIZE, CandleCodec.RECORD_SIZE)
+            output.flush()
+            val line = input.readLine()
+            rtts[tick] = System.nanoTime() - start
+
+            val expected = "EURUSD,15,${if (tick % 2 == 0) "UP" else "DOWN"}"
+            if (line != expected) throw AssertionError("Tick $tick answered $line instead of $expected")
+        }
+
+        if (ingested.size != 100 + TICKS) throw AssertionError("Ingested ${ingested.size} candles")
+        rtts.sort()
+        log.info("Tick round-trip over loopback, p50: {} us, p99: {} us",
+                TimeUnit.NANOSECONDS.toMicros(rtts[TICKS / 2]), TimeUnit.NANOSECONDS.toMicros(rtts[TICKS * 99 / 100]))
+    }
+    server.stop()
+}
+
+private fun server(learnService: LearnService, maxConnections: Int): StreamServer {
+    val server = StreamServer()
+    StreamServer::class.java.getDeclaredField("port").apply { isAccessible = true }.set(server, 0)
+    StreamServer::class.java.getDeclaredField("address").apply { isAccessible = true }.set(server, "127.0.0.1")
+    StreamServer::class.java.getDeclaredField("maxConnections").apply { isAccessible = true }.set(server, maxConnections)
+    StreamServer::class.java.getDeclaredField("learnService").apply { isAccessible = true }.set(server, learnService)
+    server.start()
+    return server
+}
+
+private fun candle(index: Int, live: Boolean): Candle {
+    val candle = Candle()
+    candle.time = Timestamp(1_534_838_400_000L + index * TimeUnit.MINUTES.toMillis(15))
+    candle.symbol = "EURUSD"
+    candle.step = 15
+    candle.bid = if (live) 1.1525 else 0.0
+    candle.ask = if (live) 1.1526 else 0.0
+    candle.open = 1.1525
+    candle.close = if (index % 2 == 0) 1.1530 else 1.1520
+    candle.high = 1.1535
+    candle.low = 1.1515
+    return candle
+}
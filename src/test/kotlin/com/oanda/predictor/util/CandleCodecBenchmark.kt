@@ -0,0 +1,107 @@
+package com.oanda.predictor.util
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.oanda.predictor.domain.Candle
+import org.slf4j.LoggerFactory
+import java.io.ByteArrayInputStream
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.sql.Timestamp
+import java.util.concurrent.TimeUnit
+
+class CandleCodecBenchmark
+
+private val log = LoggerFactory.getLogger(CandleCodecBenchmark::class.java)
+
+private const val CANDLES = 100_000
+private const val ROUNDS = 5
+
+private val objectMapper = ObjectMapper()
+
+fun main(args: Array<String>) {
+    malformedTest()
+    parseBenchmark()
+}
+
+/**
+ * Records with a symbol index out of the symbol table, or without a positive step or time, are rejected as malformed.
+ */
+fun malformedTest() {
+    val header = 5 + "EURUSD".length
+    val corruptions = listOf(
+            "symbol index 1" to corruption { it.putShort(header, 1) },
+            "negative symbol index" to corruption { it.putShort(header, -1) },
+            "step 0" to corruption { it.putInt(header + 2, 0) },
+            "negative time" to corruption { it.putLong(header + 6, -1) })
+    for ((name, binary) in corruptions) {
+        try {
+            CandleCodec.decode(ByteArrayInputStream(binary)).next()
+            throw AssertionError("A record with $name was decoded")
+        } catch (ex: CandleCodec.FormatException) {
+            log.info("A record with {} is rejected: {}", name, ex.message)
+        }
+    }
+}
+
+private fun corruption(corrupt: (ByteBuffer) -> Unit): ByteArray {
+    val binary = CandleCodec.encode(listOf(candle(0)))
+    corrupt(ByteBuffer.wrap(binary).order(ByteOrder.LITTLE_ENDIAN))
+    return binary
+}
+
+/**
+ * Parse throughput (candles/sec) and payload size of a tick: JSON as the EA sends it against [CandleCodec].
+ */
+fun parseBenchmark() {
+    val candles = (0 until CANDLES).map { candle(it) }
+    val json = candles.map { eaJson(it).toByteArray() }
+    val binary = candles.map { CandleCodec.encode(listOf(it)) }
+
+    for (index in candles.indices) {
+        val expected = candles[index]
+        val decoded = CandleCodec.decode(ByteArrayInputStream(binary[index])).next()
+        val parsed = objectMapper.readValue(json[index], Candle::class.java)
+        for (candle in listOf(decoded, parsed)) {
+            if (candle.symbol != expected.symbol || candle.step != expected.step || candle.time != expected.time
+                    || candle.bid != expected.bid || candle.ask != expected.ask || candle.open != expected.open
+                    || candle.high != expected.high || candle.low != expected.low || candle.close != expected.close) {
+                throw AssertionError("Candle $index decoded as $candle")
+            }
+        }
+    }
+
+    log.info("bytes/candle, json: {}, binary: {}", json.sumBy { it.size } / CANDLES, binary.sumBy { it.size } / CANDLES)
+    for (round in 0 until ROUNDS) {
+        val jsonRate = measure { json.forEach { objectMapper.readValue(it, Candle::class.java) } }
+        val binaryRate = measure { binary.forEach { CandleCodec.decode(ByteArrayInputStream(it)).next() } }
+        log.info("candles/sec, json: {}, binary: {}", jsonRate, binaryRate)
+    }
+}
+
+private fun measure(parse: () -> Unit): Long {
+    val start = System.nanoTime()
+    parse()
+    return CANDLES * TimeUnit.SECONDS.toNanos(1) / (System.nanoTime() - start)
+}
+
+private fun candle(index: Int): Candle {
+    val candle = Candle()
+    candle.time = Timestamp(1_534_838_400_000L + index * TimeUnit.MINUTES.toMillis(15))
+    candle.symbol = "EURUSD"
+    candle.step = 15
+    candle.bid = 1.15250 + index % 100 / 100_000.0
+    candle.ask = candle.bid + 0.00012
+    candle.open = candle.bid - 0.00030
+    candle.high = candle.bid + 0.00100
+    candle.low = candle.bid - 0.00100
+    candle.close = candle.bid
+    candle.volume = index % 1000
+    return candle
+}
+
+// the document of "Simple EA.mq4", volume goes as "value"
+private fun eaJson(candle: Candle): String {
+    return "{\"time\":\"${candle.time.time}\",\"symbol\":\"${candle.symbol}\",\"step\":\"${candle.step}\"," +
+            "\"bid\":\"${candle.bid}\",\"ask\":\"${candle.ask}\",\"open\":\"${candle.open}\"," +
+            "\"high\":${candle.high},\"low\":${candle.low},\"close\":${candle.close},\"value\":${candle.volume}}"
+}
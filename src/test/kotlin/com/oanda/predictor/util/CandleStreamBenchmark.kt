@@ -0,0 +1,79 @@
+package com.oanda.predictor.util
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.oanda.predictor.domain.Candle
+import com.oanda.predictor.repository.CandleRepository
+import org.slf4j.LoggerFactory
+import java.io.ByteArrayInputStream
+import java.io.InputStreamReader
+import java.sql.Timestamp
+import java.util.concurrent.TimeUnit
+
+class CandleStreamBenchmark
+
+private val log = LoggerFactory.getLogger(CandleStreamBenchmark::class.java)
+
+private const val LIMIT = 1_000
+private const val CANDLES = 100_000
+private const val ROUNDS = 5
+
+private val objectMapper = ObjectMapper()
+
+fun main(args: Array<String>) {
+    ingestBenchmark()
+}
+
+/**
+ * Ingest throughput (candles/sec) of one JSON document per candle, as /api/add-candle receives them,
+ * against the streamed JSON array and CSV bodies of /api/add-candles.
+ */
+fun ingestBenchmark() {
+    val candles = (0 until CANDLES).map { candle(it) }
+    val documents = candles.map { objectMapper.writeValueAsBytes(it) }
+    val array = objectMapper.writeValueAsBytes(candles)
+    val csv = candles.joinToString("\n") { csvLine(it) }.toByteArray()
+
+    for (round in 0 until ROUNDS) {
+        val single = measure { repository -> documents.forEach { repository.addCandle(objectMapper.readValue(it, Candle::class.java)) } }
+        val streamed = measure { repository ->
+            objectMapper.readerFor(Candle::class.java).readValues<Candle>(ByteArrayInputStream(array)).forEach { repository.addCandle(it) }
+        }
+        val streamedCsv = measure { repository ->
+            CSVUtil.readCandles(InputStreamReader(ByteArrayInputStream(csv)), "EURUSD", 15).forEach { repository.addCandle(it) }
+        }
+        log.info("candles/sec, single json: {}, json array: {}, csv: {}", single, streamed, streamedCsv)
+    }
+}
+
+private fun measure(ingest: (CandleRepository) -> Unit): Long {
+    val repository = CandleRepository()
+    CandleRepository::class.java.getDeclaredField("limit").apply { isAccessible = true }.set(repository, LIMIT)
+
+    val start = System.nanoTime()
+    ingest(repository)
+    val elapsed = System.nanoTime() - start
+
+    val last = repository.getLastCandle("EURUSD", 15)
+    if (repository.getSize("EURUSD", 15) != LIMIT || last.time.time != candle(CANDLES - 1).time.time || last.close != candle(CANDLES - 1).close) {
+        throw AssertionError("Unexpected last candle $last")
+    }
+    return CANDLES * TimeUnit.SECONDS.toNanos(1) / elapsed
+}
+
+private fun candle(index: Int): Candle {
+    val candle = Candle()
+    candle.time = Timestamp(index * TimeUnit.MINUTES.toMillis(15))
+    candle.symbol = "EURUSD"
+    candle.step = 15
+    candle.open = 1.1525 + index % 100 / 10_000.0
+    candle.high = candle.open + 0.0010
+    candle.low = candle.open - 0.0010
+    candle.close = candle.open + 0.0005
+    candle.volume = index % 1000
+    return candle
+}
+
+private fun csvLine(candle: Candle): String {
+    val time = java.text.SimpleDateFormat("dd.MM.yyyy HH:mm:ss.SSSZ").format(candle.time)
+    return "$time,${candle.open},${candle.high},${candle.low},${candle.close},${candle.volume}"
+}
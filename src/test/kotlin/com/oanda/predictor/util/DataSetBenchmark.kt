@@ -0,0 +1,37 @@
+package com.oanda.predictor.util
+
+import org.slf4j.LoggerFactory
+
+class DataSetBenchmark
+
+private val log = LoggerFactory.getLogger(DataSetBenchmark::class.java)
+
+private const val DATA_SIZE = 1_000
+private const val EPOCHS = 20
+
+fun main(args: Array<String>) {
+    miniBatchBenchmark()
+}
+
+/**
+ * Mini-batch assembly throughput (examples/sec) of [StockDataSetIterator.next] on Data.csv.
+ */
+fun miniBatchBenchmark() {
+    val dataFile = DataSetBenchmark::class.java.getResource("/Data.csv").file
+    val iterator = StockDataSetIterator(CSVUtil.getCandles(dataFile, DATA_SIZE), 1.0)
+
+    epochs(iterator, EPOCHS) // warm up
+    val start = System.nanoTime()
+    val examples = epochs(iterator, EPOCHS)
+    val elapsed = System.nanoTime() - start
+    log.info("Mini-batches: {} examples/sec", examples * 1_000_000_000L / elapsed)
+}
+
+private fun epochs(iterator: StockDataSetIterator, epochs: Int): Long {
+    var examples = 0L
+    for (epoch in 0 until epochs) {
+        while (iterator.hasNext()) examples += iterator.next().numExamples()
+        iterator.reset()
+    }
+    return examples
+}
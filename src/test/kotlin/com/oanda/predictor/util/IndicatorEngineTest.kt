@@ -0,0 +1,59 @@
+package com.oanda.predictor.util
+
+import com.oanda.predictor.domain.Candle
+import org.slf4j.LoggerFactory
+
+class IndicatorEngineTest
+
+private val log = LoggerFactory.getLogger(IndicatorEngineTest::class.java)
+
+private const val DATA_SIZE = 1_000
+
+// max drift relative to the indicator range: exact for TRIMA and EMA, warm-up influence for the recurrences
+private val TOLERANCES = doubleArrayOf(1e-3, 1e-2, 1e-2, 1e-9, 1e-9, 1e-9)
+
+fun main(args: Array<String>) {
+    equivalenceTest()
+}
+
+/**
+ * Compares [IndicatorEngine] with TA-Lib applied on the windows StockDataSetIterator used to copy for every index.
+ */
+fun equivalenceTest() {
+    val dataFile = IndicatorEngineTest::class.java.getResource("/Data.csv").file
+    val candles = CSVUtil.getCandles(dataFile, DATA_SIZE)
+
+    val engine = IndicatorEngine()
+    val drifts = DoubleArray(IndicatorEngine.SIZE)
+    val mins = DoubleArray(IndicatorEngine.SIZE) { Double.MAX_VALUE }
+    val maxs = DoubleArray(IndicatorEngine.SIZE) { -Double.MAX_VALUE }
+    for (i in candles.indices) {
+        for (n in 0 until IndicatorEngine.SIZE) {
+            val window = StockDataSetIterator.INDICATOR_WINDOWS[n]
+            if (i < window) continue
+            val expected = talib(n, candles.subList(i - window, i))
+            drifts[n] = Math.max(drifts[n], Math.abs(engine.value(n) - expected))
+            mins[n] = Math.min(mins[n], expected)
+            maxs[n] = Math.max(maxs[n], expected)
+        }
+        engine.update(candles[i].high, candles[i].low, candles[i].close)
+    }
+
+    for (n in 0 until IndicatorEngine.SIZE) {
+        val drift = drifts[n] / (maxs[n] - mins[n])
+        log.info("Indicator {}: max drift {} of range [{}, {}]", n, drift, mins[n], maxs[n])
+        if (drift > TOLERANCES[n]) throw AssertionError("Indicator $n drift $drift exceeds ${TOLERANCES[n]}")
+    }
+}
+
+private fun talib(indicator: Int, window: List<Candle>): Double {
+    val inClose = DoubleArray(window.size) { window[it].close }
+    return when (indicator) {
+        IndicatorEngine.MACD -> IndicatorsUtil.macd(inClose)
+        IndicatorEngine.RSI -> IndicatorsUtil.rsi(inClose)
+        IndicatorEngine.ADX -> IndicatorsUtil.adx(inClose, DoubleArray(window.size) { window[it].low }, DoubleArray(window.size) { window[it].high })
+        IndicatorEngine.MA_BLACK -> IndicatorsUtil.movingAverageBlack(inClose)
+        IndicatorEngine.MA_WHITE -> IndicatorsUtil.movingAverageWhite(inClose)
+        else -> IndicatorsUtil.ema(inClose)
+    }
+}
@@ -0,0 +1,193 @@
+package com.oanda.predictor.util
+
+import com.oanda.predictor.domain.Candle
+import com.oanda.predictor.repository.CandleSeries
+import org.bytedeco.javacpp.Pointer
+import org.nd4j.linalg.api.ndarray.INDArray
+import org.nd4j.linalg.indexing.NDArrayIndex
+import org.slf4j.LoggerFactory
+import java.sql.Timestamp
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicLong
+import kotlin.concurrent.thread
+
+class InferenceBenchmark
+
+private val log = LoggerFactory.getLogger(InferenceBenchmark::class.java)
+
+private const val DATA_SIZE = 1_000
+private const val LENGTH = 22
+private const val STEPS = 100
+private const val SECONDS = 5L
+
+fun main(args: Array<String>) {
+    statelessTest()
+    throughputBenchmark()
+    poolBenchmark()
+}
+
+/**
+ * The last step of the sequence is the single-step input the actor used to feed, the engine answers the same
+ * sequence the same way on every call and as a network stepped through it from a cleared state. Reports how far
+ * repeated rnnTimeStep calls on one input drift apart.
+ */
+fun statelessTest() {
+    val sequence = lastSequence()
+    val input = sequenceStep(sequence, LENGTH - 1)
+    if (!input.equalsWithEps(lastInput(), 1e-12)) throw AssertionError("The last step differs from the single-step input")
+
+    val network = LSTMNetwork.createNetwork(iterator())
+    val engine = InferenceEngine(network)
+    val output = engine.predict(sequence).dup()
+    if (!engine.predict(sequence).equalsWithEps(output, 0.0)) throw AssertionError("The engine kept state between calls")
+
+    network.rnnClearPreviousState()
+    var stepped: INDArray? = null
+    for (time in 0 until LENGTH) stepped = network.rnnTimeStep(sequenceStep(sequence, time))
+    if (!stepped!!.equalsWithEps(output, 1e-5)) throw AssertionError("The sequence output differs from the stepped output")
+
+    network.rnnClearPreviousState()
+    val first = network.rnnTimeStep(input).dup()
+    var last = first
+    for (i in 1 until STEPS) last = network.rnnTimeStep(input)
+    network.rnnClearPreviousState()
+
+    log.info("Predictions are stateless; {} rnnTimeStep calls on the same input drifted by up to {}",
+            STEPS, last.sub(first).amaxNumber())
+}
+
+/**
+ * Predictions/sec of one engine by count of calling threads, with the worker copies it made,
+ * against a single rnnTimeStep of the former predictions.
+ */
+fun throughputBenchmark() {
+    val sequence = lastSequence()
+    val input = sequenceStep(sequence, LENGTH - 1)
+    val network = LSTMNetwork.createNetwork(iterator())
+
+    for (i in 0 until 200) network.rnnTimeStep(input) // warm up
+    var start = System.nanoTime()
+    for (i in 0 until 1_000) network.rnnTimeStep(input)
+    network.rnnClearPreviousState()
+    log.info("rnnTimeStep of one step: {} us", (System.nanoTime() - start) / 1_000 / 1_000)
+
+    val engine = InferenceEngine(network)
+    for (threads in intArrayOf(1, 2, 4, 8)) {
+        val running = AtomicBoolean(true)
+        val predictions = AtomicLong()
+        val done = CountDownLatch(threads)
+        start = System.nanoTime()
+        for (t in 0 until threads) {
+            thread {
+                while (running.get()) {
+                    engine.predict(sequence)
+                    predictions.incrementAndGet()
+                }
+                done.countDown()
+            }
+        }
+        Thread.sleep(TimeUnit.SECONDS.toMillis(SECONDS))
+        running.set(false)
+        done.await()
+        val seconds = (System.nanoTime() - start) / 1e9
+        log.info("Threads: {}, predictions/sec: {}, us/prediction: {}, workers: {}",
+                threads, Math.round(predictions.get() / seconds), Math.round(seconds * 1e6 * threads / predictions.get()), engine.workers)
+    }
+}
+
+/**
+ * Native memory of an engine's workers, which share the parameters of the network, against as many network clones,
+ * and predictions/sec as workers and calling threads scale together.
+ */
+fun poolBenchmark() {
+    val sequence = lastSequence()
+    val network = LSTMNetwork.createNetwork(iterator())
+    val expected = network.output(sequence, false)
+    val parameterBytes = network.numParams() * network.params().data().elementSize
+
+    for (workers in intArrayOf(1, 2, 4, 8)) {
+        var before = nativeBytes()
+        val clones = List(workers) { network.clone().apply { output(sequence, false) } }
+        val cloned = nativeBytes() - before
+
+        before = nativeBytes()
+        val engine = InferenceEngine(network)
+        val predictions = predictConcurrently(engine, sequence, workers)
+        val shared = nativeBytes() - before
+        if (!engine.predict(sequence).equalsWithEps(expected.get(NDArrayIndex.point(0), NDArrayIndex.all(), NDArrayIndex.point(LENGTH - 1)), 1e-6)) {
+            throw AssertionError("A worker predicts differently from the network")
+        }
+
+        log.info("Workers: {} ({} made), predictions/sec: {}, native memory: {} KB shared against {} KB for {} clones, parameters: {} KB",
+                workers, engine.workers, predictions, shared / 1024, cloned / 1024, clones.size, parameterBytes / 1024)
+    }
+}
+
+private fun predictConcurrently(engine: InferenceEngine, sequence: INDArray, threads: Int): Long {
+    val running = AtomicBoolean(true)
+    val predictions = AtomicLong()
+    val done = CountDownLatch(threads)
+    for (t in 0 until threads) {
+        thread {
+            while (running.get()) {
+                engine.predict(sequence)
+                predictions.incrementAndGet()
+            }
+            done.countDown()
+        }
+    }
+    Thread.sleep(TimeUnit.SECONDS.toMillis(SECONDS))
+    running.set(false)
+    done.await()
+    return predictions.get() / SECONDS
+}
+
+// native memory held by live arrays
+private fun nativeBytes(): Long {
+    for (i in 0 until 3) {
+        System.gc()
+        Thread.sleep(200)
+    }
+    return Pointer.totalBytes()
+}
+
+private fun iterator() = StockDataSetIterator(candles(), 0.9)
+
+private fun candles(): List<Candle> {
+    val candles = CSVUtil.getCandles(InferenceBenchmark::class.java.getResource("/Data.csv").file, DATA_SIZE)
+    candles.forEachIndexed { i, candle -> candle.time = Timestamp(i * TimeUnit.MINUTES.toMillis(15)) }
+    return candles
+}
+
+/**
+ * The window of the actor, scaled with the ranges of the training.
+ */
+private class Window {
+    val closes = DoubleArray(StockDataSetIterator.getVectorSize())
+    val indicators = Array(StockDataSetIterator.VECTOR_K + 1) { DoubleArray(closes.size) }
+    val training: StockDataSetIterator
+
+    init {
+        val candles = candles()
+        training = StockDataSetIterator(candles, 1.0)
+        val series = CandleSeries("Data", 15, DATA_SIZE)
+        candles.forEach { series.add(it) }
+        series.copyLast(closes, indicators)
+    }
+}
+
+private fun lastSequence(): INDArray {
+    val w = Window()
+    return StockDataSetIterator.lastSequence(w.indicators, w.closes, w.training.mins, w.training.maxs, w.training.closes)
+}
+
+private fun lastInput(): INDArray {
+    val w = Window()
+    return StockDataSetIterator.lastInput(w.indicators, w.closes, w.training.mins, w.training.maxs, w.training.closes)
+}
+
+private fun sequenceStep(sequence: INDArray, time: Int): INDArray {
+    return sequence.get(NDArrayIndex.point(0), NDArrayIndex.all(), NDArrayIndex.point(time)).dup().reshape(1, sequence.size(1))
+}
@@ -0,0 +1,49 @@
+package com.oanda.predictor.util
+
+import com.oanda.predictor.config.propertyProfiles
+import org.slf4j.LoggerFactory
+
+class NetworkProfileBenchmark
+
+private val log = LoggerFactory.getLogger(NetworkProfileBenchmark::class.java)
+
+private const val DATA_SIZE = 1_000
+private const val VALIDATION_CANDLES = 100
+private const val EPOCHS = 5
+private const val PREDICTIONS = 1_000
+
+fun main(args: Array<String>) {
+    profileBenchmark()
+}
+
+/**
+ * Epoch time, rnnTimeStep latency, parameter count and validation error after [EPOCHS] epochs of every profile on Data.csv.
+ */
+fun profileBenchmark() {
+    val dataFile = NetworkProfileBenchmark::class.java.getResource("/Data.csv").file
+    val candles = CSVUtil.getCandles(dataFile, DATA_SIZE)
+    val iterator = StockDataSetIterator(candles, 1.0)
+    val validation = StockDataSetIterator(candles, 1.0)
+    validation.useLastCandles(VALIDATION_CANDLES)
+    iterator.holdOutLastCandles(VALIDATION_CANDLES)
+    val input = StockDataSetIterator(candles, 0.9).lastTestInput()
+
+    val profiles = propertyProfiles()
+    if (profiles["default"] != LSTMNetwork.Profile.DEFAULT) throw AssertionError("The default profile is ${profiles["default"]}")
+
+    for ((name, profile) in profiles) {
+        val net = LSTMNetwork.createNetwork(iterator, profile)
+        var start = System.currentTimeMillis()
+        LSTMNetwork.fit(net, iterator, EPOCHS)
+        val epoch = (System.currentTimeMillis() - start) / EPOCHS
+        val error = LSTMNetwork.score(net, validation)
+
+        for (i in 0 until PREDICTIONS) net.rnnTimeStep(input) // warm up
+        start = System.nanoTime()
+        for (i in 0 until PREDICTIONS) net.rnnTimeStep(input)
+        val latency = (System.nanoTime() - start) / PREDICTIONS / 1_000
+
+        log.info("Profile {} ({}): {} params, epoch {} ms, rnnTimeStep {} us, validation error {}",
+                name, profile, net.numParams(), epoch, latency, error)
+    }
+}
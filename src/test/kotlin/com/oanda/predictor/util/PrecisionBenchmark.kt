@@ -0,0 +1,94 @@
+package com.oanda.predictor.util
+
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork
+import org.deeplearning4j.util.ModelSerializer
+import org.nd4j.linalg.api.buffer.DataBuffer
+import org.nd4j.linalg.factory.Nd4j
+import org.slf4j.LoggerFactory
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+
+class PrecisionBenchmark
+
+private val log = LoggerFactory.getLogger(PrecisionBenchmark::class.java)
+
+private const val DATA_SIZE = 1_000
+private const val EPOCHS = 3
+private const val PREDICTIONS = 1_000
+private const val CLOSE = 6
+private val LAST_CLOSE = StockDataSetIterator.VECTOR_SIZE_1 + StockDataSetIterator.VECTOR_SIZE_2 - 1
+
+fun main(args: Array<String>) {
+    agreementBenchmark()
+}
+
+/**
+ * Trains a network in double precision, runs it in float32 on the same parameters and compares the predicted
+ * closes and their direction on the test inputs of Data.csv. Reports epoch time, model size and rnnTimeStep latency
+ * of both types.
+ */
+fun agreementBenchmark() {
+    val dataFile = PrecisionBenchmark::class.java.getResource("/Data.csv").file
+    val candles = CSVUtil.getCandles(dataFile, DATA_SIZE)
+
+    Nd4j.setDataType(DataBuffer.Type.DOUBLE)
+    val reference = LSTMNetwork.createNetwork(StockDataSetIterator(candles, 0.9))
+    check(reference.params().data().dataType() == DataBuffer.Type.DOUBLE)
+    val doubleEpoch = epochTime(reference, StockDataSetIterator(candles, 0.9))
+    val doubleOutputs = predict(reference, StockDataSetIterator(candles, 0.9))
+    val doubleLatency = latency(reference, StockDataSetIterator(candles, 0.9))
+    val model = ByteArrayOutputStream()
+    ModelSerializer.writeModel(reference, model, false)
+
+    Nd4j.setDataType(DataBuffer.Type.FLOAT)
+    val converted = ModelSerializer.restoreMultiLayerNetwork(ByteArrayInputStream(model.toByteArray()), false)
+    check(converted.params().data().dataType() == DataBuffer.Type.FLOAT)
+    val floatOutputs = predict(converted, StockDataSetIterator(candles, 0.9))
+    val floatLatency = latency(converted, StockDataSetIterator(candles, 0.9))
+    val floatModel = ByteArrayOutputStream()
+    ModelSerializer.writeModel(converted, floatModel, false)
+    val floatEpoch = epochTime(LSTMNetwork.createNetwork(StockDataSetIterator(candles, 0.9)), StockDataSetIterator(candles, 0.9))
+
+    var agreed = 0
+    var maxError = 0.0
+    for (i in doubleOutputs.indices) {
+        if (doubleOutputs[i][0] == floatOutputs[i][0]) agreed++
+        maxError = Math.max(maxError, Math.abs(doubleOutputs[i][1] - floatOutputs[i][1]))
+    }
+
+    log.info("double: epoch {} ms, model {} bytes, rnnTimeStep {} us", doubleEpoch, model.size(), doubleLatency)
+    log.info("float: epoch {} ms, model {} bytes, rnnTimeStep {} us", floatEpoch, floatModel.size(), floatLatency)
+    log.info("Close direction agreement {} of {}, max normalized close difference {}", agreed, doubleOutputs.size, maxError)
+}
+
+private fun epochTime(net: MultiLayerNetwork, iterator: StockDataSetIterator): Long {
+    val start = System.currentTimeMillis()
+    LSTMNetwork.fit(net, iterator, EPOCHS)
+    return (System.currentTimeMillis() - start) / EPOCHS
+}
+
+/**
+ * Direction (1 up, -1 down, 0 flat) and value of the predicted close of every test input, stepping as the actor does.
+ */
+private fun predict(net: MultiLayerNetwork, iterator: StockDataSetIterator): List<DoubleArray> {
+    net.rnnClearPreviousState()
+    val outputs = iterator.test.map { example ->
+        val close = net.rnnTimeStep(example.first).getDouble(CLOSE)
+        doubleArrayOf(Math.signum(close - example.first.getDouble(LAST_CLOSE)), close)
+    }
+    net.rnnClearPreviousState()
+    return outputs
+}
+
+private fun latency(net: MultiLayerNetwork, iterator: StockDataSetIterator): Long {
+    val input = iterator.lastTestInput()
+    for (i in 0 until PREDICTIONS) net.rnnTimeStep(input) // warm up
+    val start = System.nanoTime()
+    for (i in 0 until PREDICTIONS) net.rnnTimeStep(input)
+    net.rnnClearPreviousState()
+    return (System.nanoTime() - start) / PREDICTIONS / 1_000
+}
+
+private fun check(condition: Boolean) {
+    if (!condition) throw AssertionError()
+}
@@ -0,0 +1,95 @@
+package com.oanda.predictor.util
+
+import org.deeplearning4j.datasets.iterator.impl.ListDataSetIterator
+import org.nd4j.linalg.dataset.DataSet
+import org.slf4j.LoggerFactory
+import java.nio.file.Files
+
+class TrainingBenchmark
+
+private val log = LoggerFactory.getLogger(TrainingBenchmark::class.java)
+
+private const val DATA_SIZE = 1_000
+private const val EPOCHS = 3
+private const val NEW_CANDLES = 15
+private const val FINE_TUNE_EPOCHS = 5
+private const val VALIDATION_CANDLES = 100
+private const val MAX_EPOCHS = 20
+private const val PATIENCE = 3
+
+fun main(args: Array<String>) {
+    epochBenchmark()
+    fineTuneBenchmark()
+    earlyStoppingBenchmark()
+}
+
+/**
+ * Epoch wall time of [LSTMNetwork.fit] on Data.csv: mini-batches built inline, prefetched, and mapped from disk.
+ */
+fun epochBenchmark() {
+    val dataFile = TrainingBenchmark::class.java.getResource("/Data.csv").file
+    val candles = CSVUtil.getCandles(dataFile, DATA_SIZE)
+    val iterator = StockDataSetIterator(candles, 1.0)
+    val tensors = Files.createTempFile("NeuralNetworkData", ".tensors")
+
+    var start = System.currentTimeMillis()
+    val mapped = MappedDataSetIterator.create(tensors, MappedDataSetIterator.windowKey(candles), iterator)
+    log.info("Mapped tensors written in {} ms", System.currentTimeMillis() - start)
+
+    for ((name, trainIterator, async) in listOf(Triple("inline", iterator, false), Triple("prefetched", iterator, true), Triple("mapped", mapped, false))) {
+        val net = LSTMNetwork.createNetwork(trainIterator)
+        LSTMNetwork.fit(net, trainIterator, 1, async) // warm up
+        start = System.currentTimeMillis()
+        LSTMNetwork.fit(net, trainIterator, EPOCHS, async)
+        log.info("Batches {}, epoch: {} ms", name, (System.currentTimeMillis() - start) / EPOCHS)
+    }
+    Files.delete(tensors)
+}
+
+/**
+ * Wall time of a fine-tune on [NEW_CANDLES] new candles against one epoch of a training from scratch on the window.
+ */
+fun fineTuneBenchmark() {
+    val dataFile = TrainingBenchmark::class.java.getResource("/Data.csv").file
+    val candles = CSVUtil.getCandles(dataFile, DATA_SIZE)
+    val previous = StockDataSetIterator(candles.subList(0, DATA_SIZE - NEW_CANDLES), 1.0)
+    val net = LSTMNetwork.createNetwork(previous)
+    LSTMNetwork.fit(net, previous, 1)
+
+    val window = StockDataSetIterator(candles.subList(NEW_CANDLES, DATA_SIZE), 1.0)
+    var start = System.currentTimeMillis()
+    LSTMNetwork.fit(net.clone(), window, 1)
+    val epoch = System.currentTimeMillis() - start
+
+    window.useLastCandles(NEW_CANDLES)
+    window.useRanges(previous.mins, previous.maxs, previous.closes[0], previous.closes[1])
+    start = System.currentTimeMillis()
+    LSTMNetwork.fit(net.clone(), window, FINE_TUNE_EPOCHS)
+    val fineTune = System.currentTimeMillis() - start
+    log.info("Full epoch: {} ms, fine-tune of {} candles x {} epochs: {} ms", epoch, NEW_CANDLES, FINE_TUNE_EPOCHS, fineTune)
+}
+
+/**
+ * Epochs an early stopped training runs on Data.csv and the validation score of its best epoch;
+ * without validation examples the training runs all epochs and has no score.
+ */
+fun earlyStoppingBenchmark() {
+    val dataFile = TrainingBenchmark::class.java.getResource("/Data.csv").file
+    val candles = CSVUtil.getCandles(dataFile, DATA_SIZE)
+    val iterator = StockDataSetIterator(candles, 1.0)
+    val validation = StockDataSetIterator(candles, 1.0)
+    validation.useLastCandles(VALIDATION_CANDLES)
+    iterator.holdOutLastCandles(VALIDATION_CANDLES)
+
+    val net = LSTMNetwork.createNetwork(iterator)
+    val start = System.currentTimeMillis()
+    val result = LSTMNetwork.fit(net, iterator, validation, MAX_EPOCHS, PATIENCE, 1e-4)
+    val score = LSTMNetwork.score(net, validation)
+    if (score != result.bestScore) throw AssertionError("The network kept score $score instead of ${result.bestScore}")
+    log.info("Early stopping: {} of {} epochs in {} ms, {} saved, best score {} at epoch {}", result.epochs, result.maxEpochs,
+            System.currentTimeMillis() - start, result.epochsSaved, result.bestScore, result.bestEpoch)
+
+    val empty = ListDataSetIterator(emptyList<DataSet>())
+    val unvalidated = LSTMNetwork.fit(LSTMNetwork.createNetwork(iterator), iterator, empty, 1, PATIENCE, 1e-4)
+    if (unvalidated.epochs != 1 || unvalidated.bestScore != null) throw AssertionError("Without validation: $unvalidated")
+}